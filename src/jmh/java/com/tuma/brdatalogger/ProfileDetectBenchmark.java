@@ -0,0 +1,53 @@
+package com.tuma.brdatalogger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Sidebar parsing: runs whenever the scoreboard changes while no profile is configured.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProfileDetectBenchmark {
+    private static final String LINE = "§6§lСервер: §fКлассик §7#§e12";
+    private static final List<String> SIDEBAR = List.of(
+            "§e§lBedrockRooms",
+            "",
+            "§fНик: §aPlayer123",
+            "§fБаланс: §6125 430§e$",
+            "§fУровень: §b17",
+            " ",
+            "§fКлан: §7нет",
+            "§fОнлайн: §a214",
+            "  ",
+            LINE,
+            "§7play.example.net");
+    private static final List<String> NO_SERVER = SIDEBAR.subList(0, 9);
+
+    @Benchmark
+    public String stripColor() {
+        return BRDataLoggerClient.stripColor(LINE);
+    }
+
+    @Benchmark
+    public String detectProfile() {
+        return BRDataLoggerClient.detectProfileFromLines(SIDEBAR);
+    }
+
+    @Benchmark
+    public String detectProfileMiss() {
+        return BRDataLoggerClient.detectProfileFromLines(NO_SERVER);
+    }
+}
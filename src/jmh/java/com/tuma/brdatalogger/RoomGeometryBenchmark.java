@@ -0,0 +1,110 @@
+package com.tuma.brdatalogger;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.util.math.BlockPos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Bounds, content hashing and the yMax footprint count for one synthetic room.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoomGeometryBenchmark {
+    private static final int ROOM_HEIGHT = 6;
+    private static final int FLOOR_Y = -60;
+
+    @Param({"100", "1000", "10000", "100000", "500000"})
+    int cells;
+
+    private final RoomGeometry geometry = new RoomGeometry();
+    private LongOpenHashSet room;
+    private long[] dense;
+    private long[] exits;
+    private int exitCount;
+    private RoomCapture capture;
+
+    @Setup
+    public void setup() {
+        room = syntheticRoom(cells, new Random(cells));
+        dense = new long[room.size()];
+        int n = geometry.copy(room, dense);
+        // Roughly one cell in ten sits on the room's edge.
+        exits = new long[n / 10 + 1];
+        for (int i = 0; i < n; i += 10) {
+            exits[exitCount++] = dense[i];
+        }
+
+        capture = new RoomCapture(geometry.minX(), geometry.maxX(), geometry.minZ(), geometry.maxZ(), 2,
+                syntheticLayers(geometry.minX(), geometry.maxX(), geometry.minZ(), geometry.maxZ(), 2, new Random(~cells)));
+    }
+
+    @Benchmark
+    public RoomGeometry bounds() {
+        geometry.copy(room, dense);
+        return geometry;
+    }
+
+    @Benchmark
+    public long contentKey() {
+        return RoomGeometry.combine(RoomGeometry.hash(dense, dense.length, 0L),
+                RoomGeometry.hash(exits, exitCount, RoomGeometry.EXIT_SEED));
+    }
+
+    @Benchmark
+    public int yMaxFootprint() {
+        BRDataLoggerClient.countYMax(capture);
+        return capture.loaded() + capture.bedrock() + capture.air();
+    }
+
+    // A flat blob of bedrock-room air: a few layers high and about as wide as it is deep.
+    private static LongOpenHashSet syntheticRoom(int cells, Random random) {
+        int side = Math.max(4, (int) Math.ceil(Math.sqrt(cells * 2.0 / ROOM_HEIGHT)));
+        int x0 = random.nextInt(60_000) - 30_000;
+        int z0 = random.nextInt(60_000) - 30_000;
+        LongOpenHashSet room = new LongOpenHashSet(cells);
+        while (room.size() < cells) {
+            int x = x0 + random.nextInt(side);
+            int y = FLOOR_Y + random.nextInt(ROOM_HEIGHT);
+            int z = z0 + random.nextInt(side);
+            room.add(BlockPos.asLong(x, y, z));
+        }
+        return room;
+    }
+
+    // Mostly bedrock with air pockets; every 16th chunk is unloaded.
+    private static ChunkLayer[] syntheticLayers(int minX, int maxX, int minZ, int maxZ, int pad, Random random) {
+        int cx0 = (minX - pad) >> 4;
+        int cx1 = (maxX + pad) >> 4;
+        int cz0 = (minZ - pad) >> 4;
+        int cz1 = (maxZ + pad) >> 4;
+        ChunkLayer[] layers = new ChunkLayer[(cx1 - cx0 + 1) * (cz1 - cz0 + 1)];
+        for (int i = 0; i < layers.length; i++) {
+            if ((i & 15) == 15) {
+                continue;
+            }
+            ChunkLayer layer = new ChunkLayer();
+            for (int w = 0; w < 4; w++) {
+                long air = random.nextLong() & random.nextLong();
+                layer.airOrLava[w] = air;
+                layer.bedrock[w] = ~air & (random.nextLong() | random.nextLong());
+            }
+            layers[i] = layer;
+        }
+        return layers;
+    }
+}
@@ -0,0 +1,142 @@
+package com.tuma.brdatalogger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Dedupe and row serialization, cycling over rooms of 100 to 500000 cells. A row holds counts,
+// not cells, so its size barely depends on the room's.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+    private static final String PROFILE = "jmh-bench";
+    private static final int ROOMS = 4096;
+
+    private final StringBuilder out = new StringBuilder(1024);
+    private BRDataLoggerClient.RoomSnapshot[] snapshots;
+    private long[] signatures;
+    private long nextSignature;
+    private int next;
+    private Path dataRoot;
+
+    // The dedupe lookups fall back to the profile's room state checkpoint, so they get an empty
+    // data directory instead of the real one.
+    @Setup
+    public void setup() throws IOException {
+        dataRoot = Files.createTempDirectory("brlog-jmh");
+        BRDataLoggerClient.dataRoot = dataRoot;
+        BRDataLoggerClient.config = new BRDataLoggerClient.LoggerConfig();
+        Random random = new Random(42);
+        snapshots = new BRDataLoggerClient.RoomSnapshot[ROOMS];
+        signatures = new long[ROOMS];
+        BRDataLoggerClient.openRoomStates(PROFILE);
+        for (int i = 0; i < ROOMS; i++) {
+            int cells = (int) Math.round(Math.pow(10.0, 2.0 + random.nextDouble() * Math.log10(5000.0)));
+            snapshots[i] = snapshot(i, cells, random);
+            signatures[i] = random.nextLong();
+            BRDataLoggerClient.shouldWriteSnapshot(i, i, signatures[i], 0, false);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(dataRoot.resolve(PROFILE));
+        Files.deleteIfExists(dataRoot);
+    }
+
+    @Benchmark
+    public boolean dedupeUnchanged() {
+        int i = next();
+        return BRDataLoggerClient.shouldWriteSnapshot(i, i, signatures[i], 0, false);
+    }
+
+    @Benchmark
+    public boolean dedupeChanged() {
+        int i = next();
+        return BRDataLoggerClient.shouldWriteSnapshot(i, i, ++nextSignature, 0, false);
+    }
+
+    @Benchmark
+    public int csv() {
+        out.setLength(0);
+        SnapshotText.appendCsv(out, snapshots[next()]);
+        return out.length();
+    }
+
+    @Benchmark
+    public int json() {
+        out.setLength(0);
+        SnapshotText.appendJson(out, snapshots[next()], false);
+        return out.length();
+    }
+
+    @Benchmark
+    public int jsonPretty() {
+        out.setLength(0);
+        SnapshotText.appendJson(out, snapshots[next()], true);
+        return out.length();
+    }
+
+    // The reflective path the text writers replaced, kept as the baseline.
+    @Benchmark
+    public String gson() {
+        return BRDataLoggerClient.GSON.toJson(snapshots[next()]);
+    }
+
+    private int next() {
+        return next = (next + 1) & (ROOMS - 1);
+    }
+
+    private static BRDataLoggerClient.RoomSnapshot snapshot(long roomId, int cells, Random random) {
+        int width = Math.max(4, (int) Math.ceil(Math.sqrt(cells / 3.0)));
+        int minX = random.nextInt(60_000) - 30_000;
+        int minZ = random.nextInt(60_000) - 30_000;
+        BRDataLoggerClient.Bounds bounds = new BRDataLoggerClient.Bounds(minX, minX + width - 1, -60, -55, minZ, minZ + width - 1);
+        int loaded = (width + 4) * (width + 4);
+        int bedrock = random.nextInt(loaded + 1);
+        int air = random.nextInt(loaded - bedrock + 1);
+        BRDataLoggerClient.YMaxSnapshot yMax = new BRDataLoggerClient.YMaxSnapshot(5, 2, width + 4, width + 4, loaded, 0,
+                bedrock, air, loaded - bedrock - air);
+        int exits = cells / 10;
+        int blastSafe = random.nextInt(cells + 1);
+        return new BRDataLoggerClient.RoomSnapshot(
+                "classic-" + (1 + random.nextInt(3)),
+                roomId,
+                minX + width / 2.0,
+                -57.5,
+                minZ + width / 2.0,
+                bounds,
+                cells,
+                exits,
+                (int) Math.round(exits * 100.0 / cells),
+                random.nextInt(cells + 1),
+                random.nextInt(cells + 1),
+                random.nextBoolean(),
+                random.nextInt(5),
+                random.nextInt(exits + 1),
+                random.nextInt(1000),
+                blastSafe,
+                blastSafe * 100.0 / cells,
+                random.nextInt(200),
+                yMax
+        );
+    }
+}
@@ -0,0 +1,134 @@
+package com.tuma.brdatalogger;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.tuma.brdatalogger.BRDataLoggerClient.LOGGER;
+import static com.tuma.brdatalogger.BRDataLoggerClient.analyzeBatch;
+import static com.tuma.brdatalogger.BRDataLoggerClient.config;
+import static com.tuma.brdatalogger.BRDataLoggerClient.measureSafely;
+
+// Single analysis thread; it owns ROOM_STATES. Large batches fan their measure step out
+// over a fork-join pool.
+final class AnalysisWorker {
+    private static final long DRAIN_TIMEOUT_MS = 5_000L;
+    private static final int PARALLEL_MIN_CELLS = 16_384;
+
+    private ExecutorService executor;
+    private ForkJoinPool pool;
+
+    private synchronized ExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "BRBaseLogger-Analysis");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return executor;
+    }
+
+    private synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), p -> {
+                ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                t.setName("BRBaseLogger-Analysis-" + t.getPoolIndex());
+                t.setDaemon(true);
+                return t;
+            }, null, false);
+        }
+        return pool;
+    }
+
+    void measure(List<RoomCapture> batch) {
+        if (config.parallelAnalysis && batch.size() > 1 && Runtime.getRuntime().availableProcessors() > 1) {
+            long cells = 0L;
+            for (RoomCapture capture : batch) {
+                cells += capture.cellCount;
+            }
+            if (cells >= PARALLEL_MIN_CELLS) {
+                pool().invoke(new MeasureTask(batch, 0, batch.size()));
+                return;
+            }
+        }
+        for (RoomCapture capture : batch) {
+            measureSafely(capture);
+        }
+    }
+
+    void submit(List<RoomCapture> batch) {
+        if (!batch.isEmpty()) {
+            execute(() -> analyzeBatch(batch));
+        }
+    }
+
+    void execute(Runnable task) {
+        try {
+            executor().execute(task);
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Analysis worker stopped, task dropped.", e);
+        }
+    }
+
+    void drain() {
+        try {
+            executor().submit(() -> { }).get(DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException | RejectedExecutionException e) {
+            LOGGER.warn("Timed out waiting for room analysis.", e);
+        }
+    }
+
+    void shutdown() {
+        ExecutorService ex;
+        ForkJoinPool fj;
+        synchronized (this) {
+            ex = executor;
+            fj = pool;
+        }
+        if (ex != null) {
+            ex.shutdown();
+            try {
+                if (!ex.awaitTermination(DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    LOGGER.warn("Timed out waiting to stop room analysis.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (fj != null) {
+            fj.shutdown();
+        }
+    }
+
+    static final class MeasureTask extends RecursiveAction {
+        private final List<RoomCapture> batch;
+        private final int from;
+        private final int to;
+
+        private MeasureTask(List<RoomCapture> batch, int from, int to) {
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                measureSafely(batch.get(from));
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new MeasureTask(batch, from, mid), new MeasureTask(batch, mid, to));
+        }
+    }
+}
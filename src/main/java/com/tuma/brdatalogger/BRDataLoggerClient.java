@@ -3,14 +3,14 @@ package com.tuma.brdatalogger;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import it.unimi.dsi.fastutil.longs.LongCollection;
-import it.unimi.dsi.fastutil.longs.LongIterator;
 import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.fabric.api.client.command.v2.ClientCommandRegistrationCallback;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientChunkEvents;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientLifecycleEvents;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
 import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.client.MinecraftClient;
-import net.minecraft.client.network.ClientPlayerEntity;
 import net.minecraft.client.world.ClientWorld;
 import net.minecraft.text.Text;
 import net.minecraft.util.math.BlockPos;
@@ -18,36 +18,47 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.time.Instant;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import static com.mojang.brigadier.arguments.IntegerArgumentType.getInteger;
+import static com.mojang.brigadier.arguments.IntegerArgumentType.integer;
 import static com.mojang.brigadier.arguments.StringArgumentType.getString;
 import static com.mojang.brigadier.arguments.StringArgumentType.greedyString;
 import static net.fabricmc.fabric.api.client.command.v2.ClientCommandManager.argument;
 import static net.fabricmc.fabric.api.client.command.v2.ClientCommandManager.literal;
 
 public class BRDataLoggerClient implements ClientModInitializer {
-    private static final Logger LOGGER = LoggerFactory.getLogger("BRBaseLogger");
-    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
-    private static final Gson PRETTY_GSON = new GsonBuilder().disableHtmlEscaping().setPrettyPrinting().create();
+    static final Logger LOGGER = LoggerFactory.getLogger("BRBaseLogger");
+    static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
     private static final DateTimeFormatter TS_FORMAT = DateTimeFormatter.ISO_INSTANT;
+    static final DateTimeFormatter FILE_TS_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss", Locale.ROOT);
     private static final String DATA_DIR_NAME = "bedrockrooms-base-logger-data";
     private static final int TICK_INTERVAL = 20;
+    private static final int DEFAULT_NEAR_RADIUS = 256;
     private static final long MIN_WRITE_INTERVAL_MS = 30_000L;
     private static final Pattern SERVER_ID_PATTERN = Pattern.compile("#\\s*(\\d+)");
     private static Method cachedSidebarMethod;
@@ -55,14 +66,34 @@ public class BRDataLoggerClient implements ClientModInitializer {
     private static volatile List<String> lastHudLines = List.of();
     private static volatile String lastHudTitle;
     private static volatile long lastHudUpdateMs;
-
-    private static final BrAccess BR = new BrAccess();
-    private static final Map<Long, RoomWriteState> ROOM_STATES = new HashMap<>();
-
-    private static LoggerConfig config;
+    private static volatile boolean scoreboardDirty = true;
+    private static volatile long scoreboardRevision;
+    private static String detectedProfile;
+
+    static final BrAccess BR = new BrAccess();
+    static final LatencyStats STATS = new LatencyStats();
+    private static final ReflectionCache REFLECTION = new ReflectionCache();
+    static final RoomStateTable ROOM_STATES = new RoomStateTable();
+    private static final RoomStateCheckpoint STATE_CHECKPOINT = new RoomStateCheckpoint();
+    private static final KnownRooms KNOWN_ROOMS = new KnownRooms();
+    private static final SnapshotWriter WRITER = new SnapshotWriter();
+    static final SegmentCompressor SEGMENT_COMPRESSOR = new SegmentCompressor();
+    private static final RoomGeometry GEOMETRY = new RoomGeometry();
+    static final CaptureCache CAPTURE_CACHE = new CaptureCache();
+    static final LongArrayPool LONG_ARRAYS = new LongArrayPool();
+    static final AnalysisWorker ANALYSIS = new AnalysisWorker();
+    static final BlastSafeQueue BLAST_SAFE_QUEUE = new BlastSafeQueue();
+    private static final BlastSafeCache BLAST_SAFE_CACHE = new BlastSafeCache();
+    static final PassScheduler SCHEDULER = new PassScheduler();
+    private static final YMaxLayerCache YMAX_LAYERS = new YMaxLayerCache();
+
+    static LoggerConfig config;
+    static volatile Path dataRoot;
     private static String activeProfile;
     private static boolean warnedNoProfile;
     private static int tickCounter;
+    // Numbers the rows handed to the writer; analysis thread only.
+    private static long rowSeq;
 
     @Override
     public void onInitializeClient() {
@@ -84,6 +115,11 @@ public class BRDataLoggerClient implements ClientModInitializer {
                                         ? "[BR-LOG] No profile selected."
                                         : "[BR-LOG] Active profile: " + activeProfile;
                                 ctx.getSource().sendFeedback(Text.literal(msg));
+                                ctx.getSource().sendFeedback(Text.literal("[BR-LOG] Room states: " + ROOM_STATES.size() + "/"
+                                        + config.roomStateMaxEntries + ", evicted " + ROOM_STATES.evictedBySize + " by size, "
+                                        + ROOM_STATES.evictedByAge + " by age, " + STATE_CHECKPOINT.restored + " restored from checkpoint"));
+                                ctx.getSource().sendFeedback(Text.literal("[BR-LOG] Known rooms: " + KNOWN_ROOMS.size
+                                        + ", " + KNOWN_ROOMS.skipped + " unchanged rooms skipped"));
                                 return 1;
                             }))
                     .then(literal("debug")
@@ -95,6 +131,8 @@ public class BRDataLoggerClient implements ClientModInitializer {
                                 if (title != null && !title.isBlank()) {
                                     ctx.getSource().sendFeedback(Text.literal("[BR-LOG] Title: " + title));
                                 }
+                                ctx.getSource().sendFeedback(Text.literal("[BR-LOG] Reflection cache: " + REFLECTION.hits.sum()
+                                        + " hits, " + REFLECTION.misses.sum() + " misses"));
                                 List<String> lines = getScoreboardDebugLines(client);
                                 if (lines.isEmpty()) {
                                     ctx.getSource().sendFeedback(Text.literal("[BR-LOG] Scoreboard lines: <none>"));
@@ -106,13 +144,63 @@ public class BRDataLoggerClient implements ClientModInitializer {
                                 }
                                 return 1;
                             }))
+                    .then(literal("stats")
+                            .executes(ctx -> {
+                                List<String> lines = STATS.describe();
+                                ctx.getSource().sendFeedback(Text.literal(lines.isEmpty()
+                                        ? "[BR-LOG] No timings recorded yet."
+                                        : "[BR-LOG] Stage latencies:"));
+                                for (String line : lines) {
+                                    ctx.getSource().sendFeedback(Text.literal("  " + line));
+                                }
+                                return 1;
+                            })
+                            .then(literal("json")
+                                    .executes(ctx -> {
+                                        dumpStats(ctx.getSource().getClient());
+                                        return 1;
+                                    }))
+                            .then(literal("reset")
+                                    .executes(ctx -> {
+                                        STATS.reset();
+                                        ctx.getSource().sendFeedback(Text.literal("[BR-LOG] Stage latencies reset."));
+                                        return 1;
+                                    })))
                     .then(literal("dump")
                             .executes(ctx -> {
                                 MinecraftClient client = ctx.getSource().getClient();
-                                logRooms(client, true);
-                                ctx.getSource().sendFeedback(Text.literal("[BR-LOG] Manual dump complete."));
+                                if (logRooms(client, true)) {
+                                    ctx.getSource().sendFeedback(Text.literal("[BR-LOG] Manual dump queued."));
+                                }
                                 return 1;
                             }))
+                    .then(literal("near")
+                            .executes(ctx -> {
+                                queryNear(ctx.getSource().getClient(), DEFAULT_NEAR_RADIUS);
+                                return 1;
+                            })
+                            .then(argument("radius", integer(1, RoomIndex.MAX_RADIUS))
+                                    .executes(ctx -> {
+                                        queryNear(ctx.getSource().getClient(), getInteger(ctx, "radius"));
+                                        return 1;
+                                    })))
+                    .then(literal("find")
+                            .then(argument("filter", greedyString())
+                                    .executes(ctx -> {
+                                        queryFind(ctx.getSource().getClient(), getString(ctx, "filter"));
+                                        return 1;
+                                    })))
+                    .then(literal("export")
+                            .then(literal("csv")
+                                    .executes(ctx -> {
+                                        exportLog(ctx.getSource().getClient(), "csv");
+                                        return 1;
+                                    }))
+                            .then(literal("jsonl")
+                                    .executes(ctx -> {
+                                        exportLog(ctx.getSource().getClient(), "jsonl");
+                                        return 1;
+                                    })))
             );
         });
 
@@ -121,23 +209,73 @@ public class BRDataLoggerClient implements ClientModInitializer {
                 return;
             }
             tickCounter++;
-            if (tickCounter % TICK_INTERVAL != 0) {
-                return;
+            BLAST_SAFE_QUEUE.beginTick(Math.max(0L, config.blastSafeBudgetMicros) * 1000L);
+            // Starting a pass counts against the same per-tick budget as its steps.
+            long tickStart = STATS.start();
+            long deadline = System.nanoTime() + Math.max(0L, config.tickBudgetMicros) * 1000L;
+            if (tickCounter % TICK_INTERVAL == 0) {
+                updateProfileFromScoreboard(client);
+                if (!SCHEDULER.isActive()) {
+                    PassContext ctx = beginPass(client, false);
+                    Iterable<?> rooms = ctx == null ? null : BR.getRoomsIterable();
+                    if (rooms != null) {
+                        SCHEDULER.start(ctx, rooms);
+                    }
+                }
+            }
+            if (SCHEDULER.isActive()) {
+                SCHEDULER.step(client, deadline);
+                STATS.tick.record(tickStart);
             }
-            updateProfileFromScoreboard(client);
-            logRooms(client, false);
+        });
+
+        ClientChunkEvents.CHUNK_LOAD.register((world, chunk) -> {
+            if (BR.isAvailable()) {
+                YMAX_LAYERS.onChunkLoad(world, chunk, BR.getYMax());
+            }
+            BLAST_SAFE_CACHE.onChunkChanged(chunk.getPos());
+        });
+
+        ClientChunkEvents.CHUNK_UNLOAD.register((world, chunk) -> {
+            YMAX_LAYERS.onChunkUnload(world, chunk);
+            BLAST_SAFE_CACHE.onChunkChanged(chunk.getPos());
         });
 
         ClientPlayConnectionEvents.JOIN.register((handler, sender, client) -> {
-            ROOM_STATES.clear();
+            onScoreboardChanged();
+            detectedProfile = null;
+            String profile = activeProfile;
+            ANALYSIS.execute(() -> KNOWN_ROOMS.load(profile));
+            ANALYSIS.execute(STATE_CHECKPOINT::save);
+            ANALYSIS.execute(ROOM_STATES::clear);
+            ANALYSIS.execute(() -> STATE_CHECKPOINT.open(profile));
+            ANALYSIS.execute(BLAST_SAFE_CACHE::clear);
+            YMAX_LAYERS.clear();
+            SCHEDULER.reset();
+            BLAST_SAFE_QUEUE.reset();
             warnedNoProfile = false;
             tickCounter = 0;
         });
 
         ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> {
-            ROOM_STATES.clear();
+            YMAX_LAYERS.clear();
+            SCHEDULER.reset();
+            BLAST_SAFE_QUEUE.reset();
             warnedNoProfile = false;
             tickCounter = 0;
+            ANALYSIS.execute(() -> {
+                endSession();
+                ROOM_STATES.clear();
+                BLAST_SAFE_CACHE.clear();
+            });
+            ANALYSIS.drain();
+        });
+
+        ClientLifecycleEvents.CLIENT_STOPPING.register(client -> {
+            ANALYSIS.execute(BRDataLoggerClient::endSession);
+            ANALYSIS.shutdown();
+            WRITER.shutdown();
+            SEGMENT_COMPRESSOR.shutdown();
         });
     }
 
@@ -159,47 +297,228 @@ public class BRDataLoggerClient implements ClientModInitializer {
         }
     }
 
-    private static void logRooms(MinecraftClient client, boolean forceDump) {
-        if (!BR.isAvailable()) {
+    private static void exportLog(MinecraftClient client, String format) {
+        if (activeProfile == null || activeProfile.isBlank()) {
+            sendMessage(client, "[BR-LOG] Set a profile first: /brlog server <name>");
             return;
         }
+        WRITER.export(activeProfile, format, client);
+        sendMessage(client, "[BR-LOG] Exporting " + format + " for " + activeProfile + "...");
+    }
+
+    private static void dumpStats(MinecraftClient client) {
         if (activeProfile == null || activeProfile.isBlank()) {
-            if (!warnedNoProfile && client != null && client.player != null) {
-                client.player.sendMessage(Text.literal("[BR-LOG] Set a profile first: /brlog server <name>"), false);
-                warnedNoProfile = true;
+            sendMessage(client, "[BR-LOG] Set a profile first: /brlog server <name>");
+            return;
+        }
+        String json = STATS.toJson();
+        Path target = getProfileDir(activeProfile).resolve("stats-" + FILE_TS_FORMAT.format(LocalDateTime.now()) + ".json");
+        ANALYSIS.execute(() -> {
+            try {
+                Files.createDirectories(target.getParent());
+                Files.writeString(target, json);
+                sendMessage(client, "[BR-LOG] Stage latencies written to " + target);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to write {}", target, e);
+                sendMessage(client, "[BR-LOG] Writing stage latencies failed: " + e.getMessage());
             }
+        });
+    }
+
+    private static void queryNear(MinecraftClient client, int radius) {
+        if (activeProfile == null || activeProfile.isBlank()) {
+            sendMessage(client, "[BR-LOG] Set a profile first: /brlog server <name>");
+            return;
+        }
+        if (client == null || client.player == null) {
             return;
         }
+        WRITER.query(new SnapshotWriter.IndexQuery(activeProfile, client, client.player.getX(), client.player.getZ(), radius, null));
+    }
+
+    private static void queryFind(MinecraftClient client, String filterText) {
+        if (activeProfile == null || activeProfile.isBlank()) {
+            sendMessage(client, "[BR-LOG] Set a profile first: /brlog server <name>");
+            return;
+        }
+        Predicate<RoomIndex.Entry> filter;
+        try {
+            filter = RoomIndex.parseFilter(filterText);
+        } catch (IllegalArgumentException e) {
+            sendMessage(client, "[BR-LOG] " + e.getMessage() + " (fields: id x y z cells exits ideal blast; ops: < <= = >= >)");
+            return;
+        }
+        double x = client != null && client.player != null ? client.player.getX() : 0.0;
+        double z = client != null && client.player != null ? client.player.getZ() : 0.0;
+        WRITER.query(new SnapshotWriter.IndexQuery(activeProfile, client, x, z, 0, filter));
+    }
+
+    static void sendMessage(MinecraftClient client, String msg) {
+        if (client == null) {
+            return;
+        }
+        client.execute(() -> {
+            if (client.player != null) {
+                client.player.sendMessage(Text.literal(msg), false);
+            }
+        });
+    }
+
+    // The completion message comes from the writer once the dumped rows are written.
+    private static boolean logRooms(MinecraftClient client, boolean forceDump) {
+        PassContext ctx = beginPass(client, forceDump);
+        if (ctx == null) {
+            return false;
+        }
         Iterable<?> rooms = BR.getRoomsIterable();
         if (rooms == null) {
-            return;
+            return false;
+        }
+        long passStart = STATS.start();
+        LoggerEvents.PassEvent event = new LoggerEvents.PassEvent();
+        event.begin();
+        List<RoomCapture> batch = new ArrayList<>();
+        int visited = 0;
+        for (Object room : rooms) {
+            visited++;
+            RoomCapture capture = captureRoom(room, ctx);
+            if (capture != null) {
+                batch.add(capture);
+            }
+        }
+        int captured = batch.size();
+        ANALYSIS.execute(() -> WRITER.notice(new SnapshotWriter.DumpNotice(client, analyzeBatch(batch))));
+        STATS.pass.record(passStart);
+        if (event.shouldCommit()) {
+            event.rooms = visited;
+            event.captured = captured;
+            event.forced = forceDump;
+            event.commit();
+        }
+        return true;
+    }
+
+    private static PassContext beginPass(MinecraftClient client, boolean forceDump) {
+        if (!BR.isAvailable()) {
+            return null;
+        }
+        if (activeProfile == null || activeProfile.isBlank()) {
+            if (!warnedNoProfile && client != null && client.player != null) {
+                client.player.sendMessage(Text.literal("[BR-LOG] Set a profile first: /brlog server <name>"), false);
+                warnedNoProfile = true;
+            }
+            return null;
         }
-        ClientWorld world = client.world;
-        int minBlast = BR.getMinBlastSafeCellsToShow();
-        int minIdeal = BR.getMinIdealPrivateCellsToShow();
-        int yMax = BR.getYMax();
         int pad = getBrymaxPad();
         if (pad < 0) {
             pad = 2;
         }
+        return new PassContext(client.world, BR.getYMax(), pad, BR.getMinBlastSafeCellsToShow(),
+                BR.getMinIdealPrivateCellsToShow(), forceDump);
+    }
 
-        for (Object room : rooms) {
-            RoomSnapshot snapshot = snapshotRoom(room, world, yMax, pad, minBlast, minIdeal);
-            if (snapshot == null) {
-                continue;
+    // Analysis thread only: ROOM_STATES is confined to it. Rooms are measured independently
+    // (possibly in parallel), then checked and written one by one in roomId order.
+    static int analyzeBatch(List<RoomCapture> batch) {
+        int queuedRows = 0;
+        try {
+            ANALYSIS.measure(batch);
+            batch.sort(RoomCapture.BY_ROOM_ID);
+            applyWrittenRows();
+            ROOM_STATES.evictExpired(System.currentTimeMillis());
+            // A batch comes from one pass, which captures for a single profile.
+            if (!batch.isEmpty()) {
+                openRoomStates(batch.get(0).profile);
+            }
+            for (RoomCapture capture : batch) {
+                if (!capture.measured || !passesFilters(capture) || !resolveBlastSafe(capture)) {
+                    continue;
+                }
+                LoggerEvents.RoomSnapshotEvent event = new LoggerEvents.RoomSnapshotEvent();
+                event.begin();
+                RoomSnapshot snapshot = snapshotRoom(capture);
+                if (snapshot == null) {
+                    continue;
+                }
+                snapshot.known = KNOWN_ROOMS.remember(capture);
+                boolean queued = WRITER.enqueue(snapshot);
+                if (queued) {
+                    queuedRows++;
+                } else {
+                    // Forget the write so the room is retried on the next pass.
+                    ROOM_STATES.remove(snapshot.roomId);
+                    KNOWN_ROOMS.forget(capture.profile, snapshot.known);
+                }
+                if (event.shouldCommit()) {
+                    event.roomId = capture.roomId;
+                    event.cells = capture.cellCount;
+                    event.exits = capture.exitCount;
+                    event.loaded = capture.loaded;
+                    event.skipped = capture.skipped;
+                    event.queued = queued;
+                    event.commit();
+                }
             }
-            if (!shouldWriteSnapshot(snapshot, forceDump)) {
-                continue;
+            STATE_CHECKPOINT.maybeSave(System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to analyse rooms.", e);
+        } finally {
+            for (RoomCapture capture : batch) {
+                capture.release();
+            }
+        }
+        return queuedRows;
+    }
+
+    private static boolean passesFilters(RoomCapture c) {
+        if (c.forceDump) {
+            return true;
+        }
+        if (c.loaded <= 0) {
+            return false;
+        }
+        return config == null || config.maxBedrockPct < 0.0 || c.bedrock * 100.0 / c.loaded <= config.maxBedrockPct;
+    }
+
+    // Rooms BedrockRooms has no blast-safe set for are looked up by content; on a miss the
+    // client thread is asked to compute it and the room waits for a later pass.
+    private static boolean resolveBlastSafe(RoomCapture c) {
+        if (c.blastSafeCount != RoomCapture.BLAST_SAFE_DEFERRED) {
+            if (c.blastSafeCount >= 0) {
+                BLAST_SAFE_CACHE.put(c);
+            }
+        } else {
+            BlastSafeCache.Entry entry = BLAST_SAFE_CACHE.get(c.contentKey);
+            if (entry == null) {
+                BLAST_SAFE_QUEUE.request(c.roomId);
+                return false;
             }
-            writeSnapshot(snapshot);
+            c.blastSafeCount = entry.count;
+            c.blastSafeHash = entry.hash;
+        }
+        return c.forceDump || c.minBlast <= 0 || c.blastSafeCount < 0 || c.blastSafeCount >= c.minBlast;
+    }
+
+    static void measureSafely(RoomCapture c) {
+        try {
+            measureRoom(c);
+            c.measured = true;
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to analyse room {}.", c.roomId, e);
         }
     }
 
+    // Detection only reruns after a scoreboard packet or a changed HUD sidebar; otherwise the
+    // cached result is re-applied, which also undoes a manual profile switch as before.
     private static void updateProfileFromScoreboard(MinecraftClient client) {
         if (client == null || client.player == null || client.world == null) {
             return;
         }
-        String detected = detectProfileFromScoreboard(client);
+        if (scoreboardDirty) {
+            scoreboardDirty = false;
+            detectedProfile = detectProfileFromScoreboard(client);
+        }
+        String detected = detectedProfile;
         if (detected == null || detected.isBlank()) {
             return;
         }
@@ -225,7 +544,7 @@ public class BRDataLoggerClient implements ClientModInitializer {
         return detectProfileFromLines(getCachedHudLines());
     }
 
-    private static String detectProfileFromLines(List<String> lines) {
+    static String detectProfileFromLines(List<String> lines) {
         if (lines == null || lines.isEmpty()) {
             return null;
         }
@@ -320,13 +639,7 @@ public class BRDataLoggerClient implements ClientModInitializer {
     }
 
     private static String readObjectiveTitle(Object objective) {
-        try {
-            Method m = objective.getClass().getMethod("getDisplayName");
-            Object text = m.invoke(objective);
-            return readTextString(text);
-        } catch (Throwable t) {
-            return null;
-        }
+        return readTextString(invokeGetter(objective, "getDisplayName"));
     }
 
     private static String getScoreboardTitle(MinecraftClient client) {
@@ -408,33 +721,16 @@ public class BRDataLoggerClient implements ClientModInitializer {
         if (client == null || client.inGameHud == null || objective == null) {
             return List.of();
         }
-        Object hud = null;
-        try {
-            Method m = client.inGameHud.getClass().getMethod("getScoreboardHud");
-            hud = m.invoke(client.inGameHud);
-        } catch (Throwable t) {
-            hud = null;
-        }
+        Object hud = invokeGetter(client.inGameHud, "getScoreboardHud");
         if (hud == null) {
             return List.of();
         }
-        Method method = null;
-        for (Method m : hud.getClass().getDeclaredMethods()) {
-            if (!m.getName().equals("getTextList")) {
-                continue;
-            }
-            if (m.getParameterCount() != 1) {
-                continue;
-            }
-            method = m;
-            break;
-        }
+        MethodHandle method = REFLECTION.declared(hud.getClass(), "getTextList", 1);
         if (method == null) {
             return List.of();
         }
         try {
-            method.setAccessible(true);
-            Object list = method.invoke(hud, objective);
+            Object list = (Object) method.invokeExact(hud, objective);
             if (!(list instanceof Iterable)) {
                 return List.of();
             }
@@ -461,11 +757,29 @@ public class BRDataLoggerClient implements ClientModInitializer {
                 }
             }
         }
+        String titleText = readTextString(title);
+        long now = System.currentTimeMillis();
+        if (now - lastHudUpdateMs > 5000L || !textLines.equals(lastHudLines) || !Objects.equals(titleText, lastHudTitle)) {
+            scoreboardDirty = true;
+        }
         lastHudLines = textLines;
-        lastHudTitle = readTextString(title);
+        lastHudTitle = titleText;
+        lastHudUpdateMs = now;
+    }
+
+    public static void touchHudSnapshot() {
         lastHudUpdateMs = System.currentTimeMillis();
     }
 
+    public static void onScoreboardChanged() {
+        scoreboardRevision++;
+        scoreboardDirty = true;
+    }
+
+    public static long getScoreboardRevision() {
+        return scoreboardRevision;
+    }
+
     private static List<String> getCachedHudLines() {
         long now = System.currentTimeMillis();
         if (now - lastHudUpdateMs > 5000L) {
@@ -479,19 +793,18 @@ public class BRDataLoggerClient implements ClientModInitializer {
         return lines;
     }
 
+    public static void onBlockUpdate(BlockPos pos) {
+        YMAX_LAYERS.onBlockUpdate(pos);
+        BLAST_SAFE_CACHE.onBlockUpdate(pos);
+    }
+
     public static net.minecraft.scoreboard.Scoreboard getClientScoreboardForHud(MinecraftClient client) {
-        try {
-            Method m = client.getClass().getMethod("getNetworkHandler");
-            Object nh = m.invoke(client);
-            if (nh != null) {
-                Method m2 = nh.getClass().getMethod("getScoreboard");
-                Object sb = m2.invoke(nh);
-                if (sb instanceof net.minecraft.scoreboard.Scoreboard) {
-                    return (net.minecraft.scoreboard.Scoreboard) sb;
-                }
+        Object nh = invokeGetter(client, "getNetworkHandler");
+        if (nh != null) {
+            Object sb = invokeGetter(nh, "getScoreboard");
+            if (sb instanceof net.minecraft.scoreboard.Scoreboard) {
+                return (net.minecraft.scoreboard.Scoreboard) sb;
             }
-        } catch (Throwable t) {
-            // ignore, fallback below
         }
         return client.world.getScoreboard();
     }
@@ -500,37 +813,43 @@ public class BRDataLoggerClient implements ClientModInitializer {
         return getClientScoreboardForHud(client);
     }
 
-    private static boolean shouldWriteSnapshot(RoomSnapshot snapshot, boolean forceDump) {
-        if (snapshot == null) {
-            return false;
-        }
-        if (!forceDump) {
-            if (snapshot.yMax.loaded <= 0) {
-                return false;
-            }
-            if (config != null && config.maxBedrockPct >= 0.0 && snapshot.yMax.loaded > 0 && snapshot.yMax.bedrockPct > config.maxBedrockPct) {
-                return false;
+    // Analysis thread, once per batch: the checkpoint shouldWriteSnapshot falls back to.
+    static void openRoomStates(String profile) {
+        STATE_CHECKPOINT.open(profile);
+    }
+
+    // roomId keys this session's states; key is the room's geometry (KnownRooms.key), which
+    // also matches the same room in the checkpoint of an earlier session.
+    static boolean shouldWriteSnapshot(long roomId, long key, long signature, int loaded, boolean forceDump) {
+        long now = System.currentTimeMillis();
+        RoomWriteState state = ROOM_STATES.get(roomId, now);
+        if (state == null) {
+            state = STATE_CHECKPOINT.get(key);
+            if (state != null) {
+                state.lastSeenMs = now;
+                ROOM_STATES.put(roomId, state);
             }
         }
-        long now = System.currentTimeMillis();
-        RoomWriteState state = ROOM_STATES.get(snapshot.roomId);
-        String signature = snapshot.signatureKey();
         if (!forceDump && state != null) {
-            if (signature.equals(state.lastSignature)) {
+            if (signature == state.lastSignature) {
                 return false;
             }
-            if (state.lastLoaded > 0 && snapshot.yMax.loaded > 0) {
-                boolean loadedIncreased = snapshot.yMax.loaded > state.lastLoaded;
+            if (state.lastLoaded > 0 && loaded > 0) {
+                boolean loadedIncreased = loaded > state.lastLoaded;
                 if (!loadedIncreased && now - state.lastWriteMs < MIN_WRITE_INTERVAL_MS) {
                     return false;
                 }
             }
         }
         RoomWriteState next = state == null ? new RoomWriteState() : state;
+        next.key = key;
+        next.seq = ++rowSeq;
         next.lastSignature = signature;
-        next.lastLoaded = snapshot.yMax.loaded;
+        next.lastLoaded = loaded;
         next.lastWriteMs = now;
-        ROOM_STATES.put(snapshot.roomId, next);
+        next.lastSeenMs = now;
+        ROOM_STATES.put(roomId, next);
+        STATE_CHECKPOINT.dirty = true;
         return true;
     }
 
@@ -564,9 +883,12 @@ public class BRDataLoggerClient implements ClientModInitializer {
     }
 
     private static Object getPlayerTeam(net.minecraft.scoreboard.Scoreboard scoreboard, String name) {
+        MethodHandle m = REFLECTION.method(scoreboard.getClass(), "getPlayerTeam", String.class);
+        if (m == null) {
+            return null;
+        }
         try {
-            Method m = scoreboard.getClass().getMethod("getPlayerTeam", String.class);
-            return m.invoke(scoreboard, name);
+            return (Object) m.invokeExact((Object) scoreboard, (Object) name);
         } catch (Throwable t) {
             return null;
         }
@@ -585,38 +907,42 @@ public class BRDataLoggerClient implements ClientModInitializer {
     }
 
     private static Object invokeGetter(Object target, String methodName) {
+        if (target == null) {
+            return null;
+        }
+        MethodHandle m = REFLECTION.getter(target.getClass(), methodName);
+        if (m == null) {
+            return null;
+        }
         try {
-            Method m = target.getClass().getMethod(methodName);
-            return m.invoke(target);
+            return (Object) m.invokeExact(target);
         } catch (Throwable t) {
             return null;
         }
     }
 
     private static String invokeStringGetter(Object target, String methodName) {
-        try {
-            Method m = target.getClass().getMethod(methodName);
-            Object value = m.invoke(target);
-            return value == null ? null : value.toString();
-        } catch (Throwable t) {
-            return null;
-        }
+        Object value = invokeGetter(target, methodName);
+        return value == null ? null : value.toString();
     }
 
     private static String readTextString(Object text) {
         if (text == null) {
             return null;
         }
+        MethodHandle m = REFLECTION.getter(text.getClass(), "getString");
+        if (m == null) {
+            return text.toString();
+        }
         try {
-            Method m = text.getClass().getMethod("getString");
-            Object value = m.invoke(text);
+            Object value = (Object) m.invokeExact(text);
             return value == null ? null : value.toString();
         } catch (Throwable t) {
             return text.toString();
         }
     }
 
-    private static String stripColor(String value) {
+    static String stripColor(String value) {
         StringBuilder out = new StringBuilder(value.length());
         boolean skip = false;
         for (int i = 0; i < value.length(); i++) {
@@ -634,209 +960,260 @@ public class BRDataLoggerClient implements ClientModInitializer {
         return out.toString();
     }
 
-    private static RoomSnapshot snapshotRoom(Object room, ClientWorld world, int yMax, int pad, int minBlastSafeCellsToShow, int minIdealPrivateCellsToShow) {
-        if (room == null || world == null) {
+    // Client thread: reads the room and the world once and copies everything the analysis
+    // needs into the capture, which keeps no reference to either afterwards.
+    static RoomCapture captureRoom(Object room, PassContext ctx) {
+        if (room == null || ctx.world == null) {
             return null;
         }
-        if (!BR.fillRoomFields(room)) {
+        long captureStart = STATS.start();
+        boolean filled = BR.fillRoomFields(room);
+        STATS.fields.record(captureStart);
+        if (!filled) {
             return null;
         }
         LongCollection cells = BR.roomCells;
         if (cells == null || cells.isEmpty()) {
             return null;
         }
-        int blastSafeCount = BR.getBlastSafeCount(room, world);
-        if (minBlastSafeCellsToShow > 0 && blastSafeCount >= 0 && blastSafeCount < minBlastSafeCellsToShow) {
+        if (ctx.minIdeal > 0 && BR.idealPrivateCount < ctx.minIdeal) {
             return null;
         }
-        if (minIdealPrivateCellsToShow > 0 && BR.idealPrivateCount < minIdealPrivateCellsToShow) {
-            return null;
+        boolean compute = ctx.forceDump || BLAST_SAFE_QUEUE.mayCompute(BR.roomId);
+        LoggerEvents.BlastSafeEvent blastEvent = new LoggerEvents.BlastSafeEvent();
+        blastEvent.begin();
+        long computeStart = System.nanoTime();
+        int blastSafeCount = BR.getBlastSafeCount(room, ctx.world, compute);
+        long computeNanos = System.nanoTime() - computeStart;
+        // Cached and deferred lookups are not samples of the computation.
+        boolean computed = compute && blastSafeCount != RoomCapture.BLAST_SAFE_DEFERRED;
+        if (computed) {
+            STATS.blastSafe.recordNanos(computeNanos);
+        }
+        if (computed && blastEvent.shouldCommit()) {
+            blastEvent.roomId = BR.roomId;
+            blastEvent.cells = cells.size();
+            blastEvent.blastSafeCells = blastSafeCount;
+            blastEvent.commit();
+        }
+        if (blastSafeCount != RoomCapture.BLAST_SAFE_DEFERRED) {
+            BLAST_SAFE_QUEUE.settle(BR.roomId, compute ? computeNanos : 0L);
+        }
+
+        RoomCapture capture = new RoomCapture();
+        capture.profile = activeProfile;
+        capture.roomId = BR.roomId;
+        capture.centerX = BR.centerX;
+        capture.centerY = BR.centerY;
+        capture.centerZ = BR.centerZ;
+        capture.standableCount = BR.standableCount;
+        capture.placeableCount = BR.placeableCount;
+        capture.sealed = BR.sealed;
+        capture.exitComponents = BR.exitComponents;
+        capture.maxExitComponentSize = BR.maxExitComponentSize;
+        capture.privateBestScore = BR.privateBestScore;
+        capture.idealPrivateCount = BR.idealPrivateCount;
+        capture.blastSafeCount = blastSafeCount;
+        capture.minBlast = ctx.minBlast;
+        capture.forceDump = ctx.forceDump;
+
+        long fingerprint = CaptureCache.fingerprint(cells, BR.exitCells, BR.blastSafeCells);
+        CaptureCache.Entry cached = ctx.forceDump ? null : CAPTURE_CACHE.get(capture.roomId, fingerprint);
+        if (cached != null) {
+            cached.applyTo(capture);
+        } else {
+            long boundsStart = STATS.start();
+            capture.cells = LONG_ARRAYS.acquire(cells.size());
+            capture.cellCount = GEOMETRY.copy(cells, capture.cells);
+            STATS.bounds.record(boundsStart);
+            capture.minX = GEOMETRY.minX;
+            capture.maxX = GEOMETRY.maxX;
+            capture.minY = GEOMETRY.minY;
+            capture.maxY = GEOMETRY.maxY;
+            capture.minZ = GEOMETRY.minZ;
+            capture.maxZ = GEOMETRY.maxZ;
+            if (BR.exitCells != null) {
+                capture.exits = LONG_ARRAYS.acquire(BR.exitCells.size());
+                capture.exitCount = RoomGeometry.copyKeys(BR.exitCells, capture.exits);
+            }
+            if (BR.blastSafeCells != null) {
+                capture.blastSafe = LONG_ARRAYS.acquire(BR.blastSafeCells.size());
+                capture.blastSafeLength = RoomGeometry.copyKeys(BR.blastSafeCells, capture.blastSafe);
+            }
+            capture.cacheEntry = CAPTURE_CACHE.put(capture, fingerprint);
+        }
+        long layersStart = STATS.start();
+        captureLayers(ctx.world, ctx.yMax, ctx.pad, capture);
+        STATS.layers.record(layersStart);
+        STATS.capture.record(captureStart);
+        return capture;
+    }
+
+    // Chunk layers are never modified once classified, so holding the references is enough.
+    private static void captureLayers(ClientWorld world, int yMax, int pad, RoomCapture capture) {
+        capture.yMax = yMax;
+        capture.pad = pad;
+        if (yMax == Integer.MIN_VALUE) {
+            return;
+        }
+        int cx0 = (capture.minX - pad) >> 4;
+        int cx1 = (capture.maxX + pad) >> 4;
+        int cz0 = (capture.minZ - pad) >> 4;
+        int cz1 = (capture.maxZ + pad) >> 4;
+        int deep = cz1 - cz0 + 1;
+        ChunkLayer[] layers = new ChunkLayer[(cx1 - cx0 + 1) * deep];
+        for (int cx = cx0; cx <= cx1; ++cx) {
+            for (int cz = cz0; cz <= cz1; ++cz) {
+                layers[(cx - cx0) * deep + (cz - cz0)] = YMAX_LAYERS.get(world, cx, cz, yMax);
+            }
         }
+        capture.layers = layers;
+    }
 
-        Bounds bounds = computeBounds(cells);
-        int roomCellsCount = cells.size();
-        int exitCount = BR.exitCells == null ? 0 : BR.exitCells.size();
-        int exitPercent = roomCellsCount > 0 ? (int) Math.round(exitCount * 100.0 / roomCellsCount) : 0;
-        double blastSafePercent = blastSafeCount >= 0 && roomCellsCount > 0
-                ? blastSafeCount * 100.0 / roomCellsCount
-                : -1.0;
+    private static void measureRoom(RoomCapture c) {
+        long yMaxStart = STATS.start();
+        countYMax(c);
+        STATS.yMax.record(yMaxStart);
+        if (c.hashed) {
+            return;
+        }
+        c.contentKey = RoomGeometry.combine(RoomGeometry.hash(c.cells, c.cellCount, 0L),
+                RoomGeometry.hash(c.exits, c.exitCount, RoomGeometry.EXIT_SEED));
+        c.blastSafeHash = RoomGeometry.hash(c.blastSafe, c.blastSafeLength, RoomGeometry.BLAST_SAFE_SEED);
+        c.hashed = true;
+        if (c.cacheEntry != null) {
+            c.cacheEntry.publish(c.contentKey, c.blastSafeHash);
+        }
+    }
 
-        YMaxSnapshot yMaxSnapshot = computeYMaxSnapshot(world, cells, yMax, pad);
-
-        return new RoomSnapshot(
-                activeProfile,
-                BR.roomId,
-                BR.centerX,
-                BR.centerY,
-                BR.centerZ,
-                bounds,
-                roomCellsCount,
-                exitCount,
-                exitPercent,
-                BR.standableCount,
-                BR.placeableCount,
-                BR.sealed,
-                BR.exitComponents,
-                BR.maxExitComponentSize,
-                BR.privateBestScore,
-                blastSafeCount,
-                blastSafePercent,
-                BR.idealPrivateCount,
-                yMaxSnapshot
-        );
+    // Analysis thread: every row queued so far reaches the disk before the checkpoint is saved,
+    // so it can include them.
+    private static void endSession() {
+        WRITER.flush();
+        STATE_CHECKPOINT.save();
     }
 
-    private static Bounds computeBounds(LongCollection cells) {
-        int minX = Integer.MAX_VALUE;
-        int minY = Integer.MAX_VALUE;
-        int minZ = Integer.MAX_VALUE;
-        int maxX = Integer.MIN_VALUE;
-        int maxY = Integer.MIN_VALUE;
-        int maxZ = Integer.MIN_VALUE;
-        LongIterator it = cells.iterator();
-        while (it.hasNext()) {
-            long l = it.nextLong();
-            int x = BlockPos.unpackLongX(l);
-            int y = BlockPos.unpackLongY(l);
-            int z = BlockPos.unpackLongZ(l);
-            if (x < minX) {
-                minX = x;
-            }
-            if (y < minY) {
-                minY = y;
-            }
-            if (z < minZ) {
-                minZ = z;
-            }
-            if (x > maxX) {
-                maxX = x;
-            }
-            if (y > maxY) {
-                maxY = y;
-            }
-            if (z > maxZ) {
-                maxZ = z;
+    // Analysis thread: takes the writer's reports on the rows it is done with. Failed rows are
+    // forgotten so they are written again on the next pass; the rest may now go into the checkpoint.
+    static void applyWrittenRows() {
+        SnapshotWriter.WrittenRows rows;
+        while ((rows = WRITER.written.poll()) != null) {
+            for (RoomSnapshot snapshot : rows.failed) {
+                ROOM_STATES.remove(snapshot.roomId);
+                KNOWN_ROOMS.forget(snapshot.profile, snapshot.known);
             }
+            STATE_CHECKPOINT.writtenSeq = Math.max(STATE_CHECKPOINT.writtenSeq, rows.seq);
         }
-        return new Bounds(minX, maxX, minY, maxY, minZ, maxZ);
     }
 
-    private static YMaxSnapshot computeYMaxSnapshot(ClientWorld world, LongCollection cells, int yMax, int pad) {
-        if (yMax == Integer.MIN_VALUE || cells == null || cells.isEmpty()) {
-            return new YMaxSnapshot(yMax, pad, 0, 0, 0, 0, 0, 0, 0);
+    private static RoomSnapshot snapshotRoom(RoomCapture c) {
+        if (!c.forceDump && KNOWN_ROOMS.isKnown(c)) {
+            return null;
         }
-        int minX = Integer.MAX_VALUE;
-        int minZ = Integer.MAX_VALUE;
-        int maxX = Integer.MIN_VALUE;
-        int maxZ = Integer.MIN_VALUE;
-        LongIterator it = cells.iterator();
-        while (it.hasNext()) {
-            long l = it.nextLong();
-            int x = BlockPos.unpackLongX(l);
-            int z = BlockPos.unpackLongZ(l);
-            if (x < minX) {
-                minX = x;
-            }
-            if (z < minZ) {
-                minZ = z;
-            }
-            if (x > maxX) {
-                maxX = x;
-            }
-            if (z > maxZ) {
-                maxZ = z;
-            }
+        long signature = RoomGeometry.combine(c.contentKey, c.blastSafeHash);
+        signature = RoomGeometry.combine(signature, ((long) c.idealPrivateCount << 32) | (c.blastSafeCount & 0xFFFFFFFFL));
+        signature = RoomGeometry.combine(signature, ((long) c.loaded << 32) | (c.skipped & 0xFFFFFFFFL));
+        signature = RoomGeometry.combine(signature, ((long) c.bedrock << 32) | (c.air & 0xFFFFFFFFL));
+        long dedupeStart = STATS.start();
+        boolean write = shouldWriteSnapshot(c.roomId, KnownRooms.key(c), signature, c.loaded, c.forceDump);
+        STATS.dedupe.record(dedupeStart);
+        if (!write) {
+            return null;
         }
-        int x0 = minX - pad;
-        int x1 = maxX + pad;
-        int z0 = minZ - pad;
-        int z1 = maxZ + pad;
-        int width = x1 - x0 + 1;
-        int depth = z1 - z0 + 1;
+        int exitPercent = c.cellCount > 0 ? (int) Math.round(c.exitCount * 100.0 / c.cellCount) : 0;
+        double blastSafePercent = c.blastSafeCount >= 0 && c.cellCount > 0
+                ? c.blastSafeCount * 100.0 / c.cellCount
+                : -1.0;
+
+        RoomSnapshot snapshot = new RoomSnapshot(
+                c.profile,
+                c.roomId,
+                c.centerX,
+                c.centerY,
+                c.centerZ,
+                new Bounds(c.minX, c.maxX, c.minY, c.maxY, c.minZ, c.maxZ),
+                c.cellCount,
+                c.exitCount,
+                exitPercent,
+                c.standableCount,
+                c.placeableCount,
+                c.sealed,
+                c.exitComponents,
+                c.maxExitComponentSize,
+                c.privateBestScore,
+                c.blastSafeCount,
+                blastSafePercent,
+                c.idealPrivateCount,
+                new YMaxSnapshot(c.yMax, c.pad, c.width, c.depth, c.loaded, c.skipped, c.bedrock, c.air, c.other)
+        );
+        // the sequence number shouldWriteSnapshot just gave the room's write state
+        snapshot.seq = rowSeq;
+        return snapshot;
+    }
+
+    static void countYMax(RoomCapture c) {
+        if (c.layers == null) {
+            return;
+        }
+        int x0 = c.minX - c.pad;
+        int x1 = c.maxX + c.pad;
+        int z0 = c.minZ - c.pad;
+        int z1 = c.maxZ + c.pad;
+        int cx0 = x0 >> 4;
+        int cz0 = z0 >> 4;
+        int deep = (z1 >> 4) - cz0 + 1;
         int total = 0;
         int bedrock = 0;
         int air = 0;
-        int other = 0;
         int skipped = 0;
-        BlockPos.Mutable pos = new BlockPos.Mutable();
-        for (int x = x0; x <= x1; ++x) {
-            for (int z = z0; z <= z1; ++z) {
-                if (!world.getChunkManager().isChunkLoaded(x >> 4, z >> 4)) {
-                    skipped++;
+        for (int cx = cx0; cx <= x1 >> 4; ++cx) {
+            int baseX = cx << 4;
+            int lx0 = Math.max(x0, baseX) - baseX;
+            int lx1 = Math.min(x1, baseX + 15) - baseX;
+            long rowMask = ((1L << (lx1 - lx0 + 1)) - 1L) << lx0;
+            for (int cz = cz0; cz <= z1 >> 4; ++cz) {
+                int baseZ = cz << 4;
+                int lz0 = Math.max(z0, baseZ) - baseZ;
+                int lz1 = Math.min(z1, baseZ + 15) - baseZ;
+                int area = (lx1 - lx0 + 1) * (lz1 - lz0 + 1);
+                ChunkLayer layer = c.layers[(cx - cx0) * deep + (cz - cz0)];
+                if (layer == null) {
+                    skipped += area;
                     continue;
                 }
-                total++;
-                pos.set(x, yMax, z);
-                net.minecraft.block.BlockState st = world.getBlockState(pos);
-                if (st.isAir() || world.getFluidState(pos).isIn(net.minecraft.registry.tag.FluidTags.LAVA)) {
-                    air++;
-                } else if (st.isOf(net.minecraft.block.Blocks.BEDROCK)) {
-                    bedrock++;
-                } else {
-                    other++;
+                total += area;
+                for (int lz = lz0; lz <= lz1; ++lz) {
+                    int word = lz >> 2;
+                    int shift = (lz & 3) << 4;
+                    bedrock += Long.bitCount((layer.bedrock[word] >>> shift) & rowMask);
+                    air += Long.bitCount((layer.airOrLava[word] >>> shift) & rowMask);
                 }
             }
         }
-        return new YMaxSnapshot(yMax, pad, width, depth, total, skipped, bedrock, air, other);
+        c.width = x1 - x0 + 1;
+        c.depth = z1 - z0 + 1;
+        c.loaded = total;
+        c.skipped = skipped;
+        c.bedrock = bedrock;
+        c.air = air;
+        c.other = total - bedrock - air;
     }
 
-    private static void writeSnapshot(RoomSnapshot snapshot) {
-        Path profileDir = getProfileDir(snapshot.profile);
-        try {
-            Files.createDirectories(profileDir);
-        } catch (IOException e) {
-            LOGGER.warn("Failed to create profile directory: {}", profileDir, e);
-            return;
-        }
-
-        Path jsonl = profileDir.resolve("bases.jsonl");
-        String jsonLine = GSON.toJson(snapshot);
-        try {
-            Files.writeString(jsonl, jsonLine + System.lineSeparator(), StandardCharsets.UTF_8,
-                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
-        } catch (IOException e) {
-            LOGGER.warn("Failed to write {}", jsonl, e);
-        }
-
-        Path csv = profileDir.resolve("bases.csv");
-        try {
-            ensureCsvHeader(csv);
-            Files.writeString(csv, snapshot.toCsvLine() + System.lineSeparator(), StandardCharsets.UTF_8,
-                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
-        } catch (IOException e) {
-            LOGGER.warn("Failed to write {}", csv, e);
-        }
-
-        Path prettyDir = profileDir.resolve("pretty");
-        try {
-            Files.createDirectories(prettyDir);
-            Path prettyFile = prettyDir.resolve("room_" + snapshot.roomId + ".json");
-            Files.writeString(prettyFile, PRETTY_GSON.toJson(snapshot), StandardCharsets.UTF_8,
-                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
-        } catch (IOException e) {
-            LOGGER.warn("Failed to write pretty snapshot for room {}", snapshot.roomId, e);
-        }
-
-        Path summary = profileDir.resolve("bases.txt");
-        try {
-            Files.writeString(summary, snapshot.toSummaryLine() + System.lineSeparator(), StandardCharsets.UTF_8,
-                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
-        } catch (IOException e) {
-            LOGGER.warn("Failed to write {}", summary, e);
+    static Path getProfileDir(String profile) {
+        Path root = dataRoot;
+        if (root == null) {
+            root = Paths.get(System.getProperty("user.home"), "Desktop").resolve(DATA_DIR_NAME);
+            dataRoot = root;
         }
+        return root.resolve(profile);
     }
 
-    private static void ensureCsvHeader(Path csv) throws IOException {
-        if (Files.exists(csv)) {
-            return;
+    static void replaceFile(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
         }
-        Files.writeString(csv, RoomSnapshot.csvHeader() + System.lineSeparator(), StandardCharsets.UTF_8,
-                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
-    }
-
-    private static Path getProfileDir(String profile) {
-        Path desktop = Paths.get(System.getProperty("user.home"), "Desktop");
-        return desktop.resolve(DATA_DIR_NAME).resolve(profile);
     }
 
     private static int getBrymaxPad() {
@@ -922,18 +1299,57 @@ public class BRDataLoggerClient implements ClientModInitializer {
         return FabricLoader.getInstance().getConfigDir().resolve("bedrockrooms-base-logger.json");
     }
 
-    private static final class LoggerConfig {
+    static final class LoggerConfig {
         private String profile = "";
         private double maxBedrockPct = -1.0;
+        int writerBatchSize = 256;
+        long writerFlushIntervalMs = 2_000L;
+        String durability = "disconnect";
+        long forceIntervalMs = 10_000L;
+        boolean textLogs = true;
+        boolean binaryLog = false;
+        int roomStateMaxEntries = 16_384;
+        long roomStateTtlMs = 30L * 60L * 1000L;
+        private long tickBudgetMicros = 1_000L;
+        boolean parallelAnalysis = true;
+        private long blastSafeBudgetMicros = 2_000L;
+        long prettyFlushIntervalMs = 10_000L;
+        boolean latencyStats = true;
+        long segmentMaxBytes = 32L * 1024L * 1024L;
+        boolean segmentDaily = true;
+        boolean compressSegments = true;
+    }
+
+    static final class PassContext {
+        final ClientWorld world;
+        private final int yMax;
+        private final int pad;
+        private final int minBlast;
+        private final int minIdeal;
+        private final boolean forceDump;
+
+        private PassContext(ClientWorld world, int yMax, int pad, int minBlast, int minIdeal, boolean forceDump) {
+            this.world = world;
+            this.yMax = yMax;
+            this.pad = pad;
+            this.minBlast = minBlast;
+            this.minIdeal = minIdeal;
+            this.forceDump = forceDump;
+        }
     }
 
-    private static final class RoomWriteState {
-        private String lastSignature;
-        private int lastLoaded;
-        private long lastWriteMs;
+    static final class RoomWriteState {
+        long key;
+        // Analysis-thread sequence number of the row last queued for the room; the checkpoint
+        // only takes the state once the writer has reported rows up to it as written.
+        long seq;
+        long lastSignature;
+        int lastLoaded;
+        long lastWriteMs;
+        long lastSeenMs;
     }
 
-    private static final class Bounds {
+    static final class Bounds {
         private final int minX;
         private final int maxX;
         private final int minY;
@@ -941,7 +1357,7 @@ public class BRDataLoggerClient implements ClientModInitializer {
         private final int minZ;
         private final int maxZ;
 
-        private Bounds(int minX, int maxX, int minY, int maxY, int minZ, int maxZ) {
+        Bounds(int minX, int maxX, int minY, int maxY, int minZ, int maxZ) {
             this.minX = minX;
             this.maxX = maxX;
             this.minY = minY;
@@ -951,21 +1367,21 @@ public class BRDataLoggerClient implements ClientModInitializer {
         }
     }
 
-    private static final class YMaxSnapshot {
-        private final int yMax;
-        private final int pad;
-        private final int width;
-        private final int depth;
-        private final int loaded;
-        private final int skipped;
-        private final int bedrock;
-        private final int air;
-        private final int other;
-        private final double bedrockPct;
-        private final double airPct;
-        private final double otherPct;
-
-        private YMaxSnapshot(int yMax, int pad, int width, int depth, int loaded, int skipped, int bedrock, int air, int other) {
+    static final class YMaxSnapshot {
+        final int yMax;
+        final int pad;
+        final int width;
+        final int depth;
+        final int loaded;
+        final int skipped;
+        final int bedrock;
+        final int air;
+        final int other;
+        final double bedrockPct;
+        final double airPct;
+        final double otherPct;
+
+        YMaxSnapshot(int yMax, int pad, int width, int depth, int loaded, int skipped, int bedrock, int air, int other) {
             this.yMax = yMax;
             this.pad = pad;
             this.width = width;
@@ -987,34 +1403,65 @@ public class BRDataLoggerClient implements ClientModInitializer {
         }
     }
 
-    private static final class RoomSnapshot {
-        private final String timestamp;
-        private final String profile;
-        private final long roomId;
-        private final double centerX;
-        private final double centerY;
-        private final double centerZ;
-        private final int minX;
-        private final int maxX;
-        private final int minY;
-        private final int maxY;
-        private final int minZ;
-        private final int maxZ;
-        private final int roomCells;
-        private final int exitCells;
-        private final int exitPercent;
-        private final int standableCount;
-        private final int placeableCount;
-        private final boolean sealed;
-        private final int exitComponents;
-        private final int maxExitComponentSize;
-        private final int privateBestScore;
-        private final int blastSafeCells;
-        private final double blastSafePercent;
-        private final int idealPrivateCount;
-        private final YMaxSnapshot yMax;
-
-        private RoomSnapshot(
+    static final class RoomSnapshot {
+        final String timestamp;
+        final transient long timestampNanos;
+        final String profile;
+        final long roomId;
+        final double centerX;
+        final double centerY;
+        final double centerZ;
+        final int minX;
+        final int maxX;
+        final int minY;
+        final int maxY;
+        final int minZ;
+        final int maxZ;
+        final int roomCells;
+        final int exitCells;
+        final int exitPercent;
+        final int standableCount;
+        final int placeableCount;
+        final boolean sealed;
+        final int exitComponents;
+        final int maxExitComponentSize;
+        final int privateBestScore;
+        final int blastSafeCells;
+        final double blastSafePercent;
+        final int idealPrivateCount;
+        final YMaxSnapshot yMax;
+        // The known_rooms.idx record vouching for this row, appended only once the row is written.
+        transient byte[] known;
+        transient long seq;
+
+        RoomSnapshot(
+                String profile,
+                long roomId,
+                double centerX,
+                double centerY,
+                double centerZ,
+                Bounds bounds,
+                int roomCells,
+                int exitCells,
+                int exitPercent,
+                int standableCount,
+                int placeableCount,
+                boolean sealed,
+                int exitComponents,
+                int maxExitComponentSize,
+                int privateBestScore,
+                int blastSafeCells,
+                double blastSafePercent,
+                int idealPrivateCount,
+                YMaxSnapshot yMax
+        ) {
+            this(Instant.now(), profile, roomId, centerX, centerY, centerZ, bounds, roomCells, exitCells, exitPercent,
+                    standableCount, placeableCount, sealed, exitComponents, maxExitComponentSize, privateBestScore,
+                    blastSafeCells, blastSafePercent, idealPrivateCount, yMax);
+        }
+
+        RoomSnapshot(
+                Instant capturedAt,
                 String profile,
                 long roomId,
                 double centerX,
@@ -1035,7 +1482,8 @@ public class BRDataLoggerClient implements ClientModInitializer {
                 int idealPrivateCount,
                 YMaxSnapshot yMax
         ) {
-            this.timestamp = TS_FORMAT.format(Instant.now());
+            this.timestamp = TS_FORMAT.format(capturedAt);
+            this.timestampNanos = capturedAt.getEpochSecond() * 1_000_000_000L + capturedAt.getNano();
             this.profile = profile;
             this.roomId = roomId;
             this.centerX = centerX;
@@ -1062,7 +1510,7 @@ public class BRDataLoggerClient implements ClientModInitializer {
             this.yMax = yMax;
         }
 
-        private static String csvHeader() {
+        static String csvHeader() {
             return String.join(",",
                     "timestamp",
                     "profile",
@@ -1102,113 +1550,14 @@ public class BRDataLoggerClient implements ClientModInitializer {
                     "yMaxOtherPct"
             );
         }
+    }
 
-        private String toCsvLine() {
-            String[] parts = new String[] {
-                    csvEscape(timestamp),
-                    csvEscape(profile),
-                    String.valueOf(roomId),
-                    formatDouble(centerX),
-                    formatDouble(centerY),
-                    formatDouble(centerZ),
-                    String.valueOf(minX),
-                    String.valueOf(maxX),
-                    String.valueOf(minY),
-                    String.valueOf(maxY),
-                    String.valueOf(minZ),
-                    String.valueOf(maxZ),
-                    String.valueOf(roomCells),
-                    String.valueOf(exitCells),
-                    String.valueOf(exitPercent),
-                    String.valueOf(standableCount),
-                    String.valueOf(placeableCount),
-                    String.valueOf(sealed),
-                    String.valueOf(exitComponents),
-                    String.valueOf(maxExitComponentSize),
-                    String.valueOf(privateBestScore),
-                    String.valueOf(blastSafeCells),
-                    formatDouble(blastSafePercent),
-                    String.valueOf(idealPrivateCount),
-                    String.valueOf(yMax.yMax),
-                    String.valueOf(yMax.pad),
-                    String.valueOf(yMax.width),
-                    String.valueOf(yMax.depth),
-                    String.valueOf(yMax.loaded),
-                    String.valueOf(yMax.skipped),
-                    String.valueOf(yMax.bedrock),
-                    String.valueOf(yMax.air),
-                    String.valueOf(yMax.other),
-                    formatDouble(yMax.bedrockPct),
-                    formatDouble(yMax.airPct),
-                    formatDouble(yMax.otherPct)
-            };
-            return String.join(",", parts);
-        }
-
-        private String signatureKey() {
-            return roomCells + ":" + exitCells + ":" + blastSafeCells + ":" + idealPrivateCount + ":" + minX + ":" + maxX + ":" + minZ + ":" + maxZ
-                    + ":" + yMax.loaded + ":" + yMax.skipped + ":" + yMax.bedrock + ":" + yMax.air + ":" + yMax.other;
-        }
-
-        private String toSummaryLine() {
-            String sealedStr = sealed ? "sealed" : "open";
-            String blastStr = blastSafeCells >= 0 ? String.valueOf(blastSafeCells) : "-";
-            String blastPct = blastSafePercent >= 0 ? formatDouble(blastSafePercent) + "%" : "-";
-            String yMaxLoaded = yMax.loaded > 0 ? String.valueOf(yMax.loaded) : "0";
-            String yMaxB = yMax.loaded > 0 ? formatDouble(yMax.bedrockPct) + "%" : "-";
-            String yMaxA = yMax.loaded > 0 ? formatDouble(yMax.airPct) + "%" : "-";
-            String yMaxO = yMax.loaded > 0 ? formatDouble(yMax.otherPct) + "%" : "-";
-            return String.format(Locale.ROOT,
-                    "%s room=%d center=(%.2f,%.2f,%.2f) size=%d exits=%d(%d%%) %s priv=%d ideal=%d blastSafe=%s(%s) yMax=%d loaded=%s b=%s a=%s o=%s",
-                    timestamp, roomId, centerX, centerY, centerZ, roomCells, exitCells, exitPercent,
-                    sealedStr, privateBestScore, idealPrivateCount, blastStr, blastPct, yMax.yMax, yMaxLoaded, yMaxB, yMaxA, yMaxO);
-        }
-
-        private static String csvEscape(String value) {
-            if (value == null) {
-                return "";
-            }
-            String escaped = value.replace("\"", "\"\"");
-            return "\"" + escaped + "\"";
-        }
-
-        private static String formatDouble(double value) {
-            if (Double.isNaN(value) || Double.isInfinite(value)) {
-                return "";
-            }
-            return String.format(Locale.ROOT, "%.3f", value);
-        }
-    }
-
-    private static final class BrAccess {
+    static final class BrAccess {
         private boolean resolved;
         private boolean available;
 
-        private Method getRoomsMethod;
         private Method valuesMethod;
-
-        private Field roomIdField;
-        private Field centerXField;
-        private Field centerYField;
-        private Field centerZField;
-        private Field roomCellsField;
-        private Field exitCellsField;
-        private Field exitComponentsField;
-        private Field maxExitComponentSizeField;
-        private Field sealedField;
-        private Field standableCountField;
-        private Field placeableCountField;
-        private Field privateBestScoreField;
-        private Field idealPrivateCountField;
-        private Field roomCountField;
-        private Field blastSafeBlocksField;
-
-        private Method computeBlastSafeMethod;
-
-        private Field cfgInstanceField;
-        private Field minBlastSafeCellsToShowField;
-        private Field minIdealPrivateCellsToShowField;
-        private Field yMaxField;
+        private Object roomsMap;
 
         private long roomId;
         private double centerX;
@@ -1216,6 +1565,7 @@ public class BRDataLoggerClient implements ClientModInitializer {
         private double centerZ;
         private LongCollection roomCells;
         private LongCollection exitCells;
+        private LongCollection blastSafeCells;
         private int exitComponents;
         private int maxExitComponentSize;
         private boolean sealed;
@@ -1234,40 +1584,50 @@ public class BRDataLoggerClient implements ClientModInitializer {
 
         private void resolve() {
             resolved = true;
-            try {
-                Class<?> brScanner = Class.forName("com.bedrockrooms.scan.BRScanner");
-                getRoomsMethod = brScanner.getMethod("getRooms");
-
-                Class<?> roomClass = Class.forName("com.bedrockrooms.scan.RoomResult");
-                roomIdField = roomClass.getField("roomId");
-                centerXField = roomClass.getField("centerX");
-                centerYField = roomClass.getField("centerY");
-                centerZField = roomClass.getField("centerZ");
-                roomCellsField = roomClass.getField("roomCells");
-                exitCellsField = roomClass.getField("exitCells");
-                exitComponentsField = roomClass.getField("exitComponents");
-                maxExitComponentSizeField = roomClass.getField("maxExitComponentSize");
-                sealedField = roomClass.getField("sealed");
-                standableCountField = roomClass.getField("standableCount");
-                placeableCountField = roomClass.getField("placeableCount");
-                privateBestScoreField = roomClass.getField("privateBestScore");
-                idealPrivateCountField = roomClass.getField("idealPrivateCount");
-                roomCountField = roomClass.getField("roomCount");
-                blastSafeBlocksField = roomClass.getField("blastSafeBlocks");
-
-                computeBlastSafeMethod = brScanner.getDeclaredMethod("computeBlastSafe", ClientWorld.class, roomClass);
-                computeBlastSafeMethod.setAccessible(true);
+            if (BrHandles.FAILURE != null) {
+                LOGGER.warn("BedrockRooms not available.", BrHandles.FAILURE);
+                available = false;
+                return;
+            }
+            available = true;
+        }
 
-                Class<?> cfgClass = Class.forName("com.bedrockrooms.config.BRConfig");
-                cfgInstanceField = cfgClass.getField("INSTANCE");
-                minBlastSafeCellsToShowField = cfgClass.getField("minBlastSafeCellsToShow");
-                minIdealPrivateCellsToShowField = cfgClass.getField("accurateDamageMinBlastSafeCellsToShow");
-                yMaxField = cfgClass.getField("yMax");
+        long peekRoomId(Object room) {
+            try {
+                return (long) BrHandles.ROOM_ID.invokeExact(room);
+            } catch (Throwable t) {
+                return Long.MIN_VALUE;
+            }
+        }
 
-                available = true;
+        // Cheap change hint: identity and size of the cell collections, no cell is read.
+        long peekFingerprint(Object room) {
+            try {
+                Object cells = (Object) BrHandles.ROOM_CELLS.invokeExact(room);
+                Object exits = (Object) BrHandles.EXIT_CELLS.invokeExact(room);
+                long h = System.identityHashCode(cells) * 31L + (cells instanceof LongCollection ? ((LongCollection) cells).size() : -1);
+                h = h * 31L + System.identityHashCode(exits);
+                return h * 31L + (exits instanceof LongCollection ? ((LongCollection) exits).size() : -1);
             } catch (Throwable t) {
-                LOGGER.warn("BedrockRooms not available.", t);
-                available = false;
+                return 0L;
+            }
+        }
+
+        // The rooms map when it is a Map keyed by roomId, checked on one of its rooms.
+        Map<?, ?> getRoomsById() {
+            if (!(roomsMap instanceof Map)) {
+                return null;
+            }
+            Map<?, ?> map = (Map<?, ?>) roomsMap;
+            try {
+                Iterator<?> it = map.values().iterator();
+                if (!it.hasNext()) {
+                    return map;
+                }
+                Object room = it.next();
+                return room != null && map.get(peekRoomId(room)) == room ? map : null;
+            } catch (RuntimeException e) {
+                return null;
             }
         }
 
@@ -1276,7 +1636,7 @@ public class BRDataLoggerClient implements ClientModInitializer {
                 return null;
             }
             try {
-                Object roomsMap = getRoomsMethod.invoke(null);
+                roomsMap = (Object) BrHandles.GET_ROOMS.invokeExact();
                 if (roomsMap == null) {
                     return null;
                 }
@@ -1298,25 +1658,26 @@ public class BRDataLoggerClient implements ClientModInitializer {
                 return false;
             }
             try {
-                roomId = ((Number) roomIdField.get(room)).longValue();
-                centerX = ((Number) centerXField.get(room)).doubleValue();
-                centerY = ((Number) centerYField.get(room)).doubleValue();
-                centerZ = ((Number) centerZField.get(room)).doubleValue();
-                Object cellsObj = roomCellsField.get(room);
+                roomId = (long) BrHandles.ROOM_ID.invokeExact(room);
+                centerX = (double) BrHandles.CENTER_X.invokeExact(room);
+                centerY = (double) BrHandles.CENTER_Y.invokeExact(room);
+                centerZ = (double) BrHandles.CENTER_Z.invokeExact(room);
+                Object cellsObj = (Object) BrHandles.ROOM_CELLS.invokeExact(room);
                 if (!(cellsObj instanceof LongCollection)) {
                     return false;
                 }
                 roomCells = (LongCollection) cellsObj;
-                Object exitsObj = exitCellsField.get(room);
+                Object exitsObj = (Object) BrHandles.EXIT_CELLS.invokeExact(room);
                 exitCells = exitsObj instanceof LongCollection ? (LongCollection) exitsObj : null;
-                exitComponents = ((Number) exitComponentsField.get(room)).intValue();
-                maxExitComponentSize = ((Number) maxExitComponentSizeField.get(room)).intValue();
-                sealed = (boolean) sealedField.get(room);
-                standableCount = ((Number) standableCountField.get(room)).intValue();
-                placeableCount = ((Number) placeableCountField.get(room)).intValue();
-                privateBestScore = ((Number) privateBestScoreField.get(room)).intValue();
-                idealPrivateCount = ((Number) idealPrivateCountField.get(room)).intValue();
-                roomCount = ((Number) roomCountField.get(room)).intValue();
+                blastSafeCells = null;
+                exitComponents = (int) BrHandles.EXIT_COMPONENTS.invokeExact(room);
+                maxExitComponentSize = (int) BrHandles.MAX_EXIT_COMPONENT_SIZE.invokeExact(room);
+                sealed = (boolean) BrHandles.SEALED.invokeExact(room);
+                standableCount = (int) BrHandles.STANDABLE_COUNT.invokeExact(room);
+                placeableCount = (int) BrHandles.PLACEABLE_COUNT.invokeExact(room);
+                privateBestScore = (int) BrHandles.PRIVATE_BEST_SCORE.invokeExact(room);
+                idealPrivateCount = (int) BrHandles.IDEAL_PRIVATE_COUNT.invokeExact(room);
+                roomCount = (int) BrHandles.ROOM_COUNT.invokeExact(room);
                 return true;
             } catch (Throwable t) {
                 LOGGER.warn("Failed to read BedrockRooms room fields.", t);
@@ -1329,8 +1690,8 @@ public class BRDataLoggerClient implements ClientModInitializer {
                 return 0;
             }
             try {
-                Object cfg = cfgInstanceField.get(null);
-                return ((Number) minBlastSafeCellsToShowField.get(cfg)).intValue();
+                Object cfg = (Object) BrHandles.CFG_INSTANCE.invokeExact();
+                return (int) BrHandles.MIN_BLAST_SAFE_CELLS_TO_SHOW.invokeExact(cfg);
             } catch (Throwable t) {
                 return 0;
             }
@@ -1341,11 +1702,11 @@ public class BRDataLoggerClient implements ClientModInitializer {
                 return 0;
             }
             try {
-                Object cfg = cfgInstanceField.get(null);
-                if (minIdealPrivateCellsToShowField == null) {
+                Object cfg = (Object) BrHandles.CFG_INSTANCE.invokeExact();
+                if (BrHandles.MIN_IDEAL_PRIVATE_CELLS_TO_SHOW == null) {
                     return 0;
                 }
-                return ((Number) minIdealPrivateCellsToShowField.get(cfg)).intValue();
+                return (int) BrHandles.MIN_IDEAL_PRIVATE_CELLS_TO_SHOW.invokeExact(cfg);
             } catch (Throwable t) {
                 return 0;
             }
@@ -1356,27 +1717,32 @@ public class BRDataLoggerClient implements ClientModInitializer {
                 return Integer.MIN_VALUE;
             }
             try {
-                Object cfg = cfgInstanceField.get(null);
-                return ((Number) yMaxField.get(cfg)).intValue();
+                Object cfg = (Object) BrHandles.CFG_INSTANCE.invokeExact();
+                return (int) BrHandles.Y_MAX.invokeExact(cfg);
             } catch (Throwable t) {
                 return Integer.MIN_VALUE;
             }
         }
 
-        private int getBlastSafeCount(Object room, ClientWorld world) {
+        private int getBlastSafeCount(Object room, ClientWorld world, boolean compute) {
             if (!isAvailable()) {
                 return -1;
             }
             try {
-                Object safeObj = blastSafeBlocksField.get(room);
+                Object safeObj = (Object) BrHandles.BLAST_SAFE_BLOCKS.invokeExact(room);
                 if (safeObj instanceof LongCollection) {
-                    return ((LongCollection) safeObj).size();
+                    blastSafeCells = (LongCollection) safeObj;
+                    return blastSafeCells.size();
                 }
-                if (computeBlastSafeMethod != null) {
-                    computeBlastSafeMethod.invoke(null, world, room);
-                    Object updated = blastSafeBlocksField.get(room);
+                if (BrHandles.COMPUTE_BLAST_SAFE != null) {
+                    if (!compute) {
+                        return RoomCapture.BLAST_SAFE_DEFERRED;
+                    }
+                    BrHandles.COMPUTE_BLAST_SAFE.invokeExact(world, room);
+                    Object updated = (Object) BrHandles.BLAST_SAFE_BLOCKS.invokeExact(room);
                     if (updated instanceof LongCollection) {
-                        return ((LongCollection) updated).size();
+                        blastSafeCells = (LongCollection) updated;
+                        return blastSafeCells.size();
                     }
                 }
             } catch (Throwable t) {
@@ -1385,4 +1751,144 @@ public class BRDataLoggerClient implements ClientModInitializer {
             return -1;
         }
     }
+
+    private static final class BrHandles {
+        private static final Throwable FAILURE;
+        private static final MethodHandle GET_ROOMS;
+        private static final MethodHandle ROOM_ID;
+        private static final MethodHandle CENTER_X;
+        private static final MethodHandle CENTER_Y;
+        private static final MethodHandle CENTER_Z;
+        private static final MethodHandle ROOM_CELLS;
+        private static final MethodHandle EXIT_CELLS;
+        private static final MethodHandle EXIT_COMPONENTS;
+        private static final MethodHandle MAX_EXIT_COMPONENT_SIZE;
+        private static final MethodHandle SEALED;
+        private static final MethodHandle STANDABLE_COUNT;
+        private static final MethodHandle PLACEABLE_COUNT;
+        private static final MethodHandle PRIVATE_BEST_SCORE;
+        private static final MethodHandle IDEAL_PRIVATE_COUNT;
+        private static final MethodHandle ROOM_COUNT;
+        private static final MethodHandle BLAST_SAFE_BLOCKS;
+        private static final MethodHandle COMPUTE_BLAST_SAFE;
+        private static final MethodHandle CFG_INSTANCE;
+        private static final MethodHandle MIN_BLAST_SAFE_CELLS_TO_SHOW;
+        private static final MethodHandle MIN_IDEAL_PRIVATE_CELLS_TO_SHOW;
+        private static final MethodHandle Y_MAX;
+
+        static {
+            Throwable failure = null;
+            MethodHandle getRooms = null;
+            MethodHandle roomId = null;
+            MethodHandle centerX = null;
+            MethodHandle centerY = null;
+            MethodHandle centerZ = null;
+            MethodHandle roomCells = null;
+            MethodHandle exitCells = null;
+            MethodHandle exitComponents = null;
+            MethodHandle maxExitComponentSize = null;
+            MethodHandle sealed = null;
+            MethodHandle standableCount = null;
+            MethodHandle placeableCount = null;
+            MethodHandle privateBestScore = null;
+            MethodHandle idealPrivateCount = null;
+            MethodHandle roomCount = null;
+            MethodHandle blastSafeBlocks = null;
+            MethodHandle computeBlastSafe = null;
+            MethodHandle cfgInstance = null;
+            MethodHandle minBlastSafeCellsToShow = null;
+            MethodHandle minIdealPrivateCellsToShow = null;
+            MethodHandle yMax = null;
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                Class<?> brScanner = Class.forName("com.bedrockrooms.scan.BRScanner");
+                getRooms = lookup.unreflect(brScanner.getMethod("getRooms"))
+                        .asType(MethodType.methodType(Object.class));
+
+                Class<?> roomClass = Class.forName("com.bedrockrooms.scan.RoomResult");
+                roomId = getter(lookup, roomClass, "roomId", long.class);
+                centerX = getter(lookup, roomClass, "centerX", double.class);
+                centerY = getter(lookup, roomClass, "centerY", double.class);
+                centerZ = getter(lookup, roomClass, "centerZ", double.class);
+                roomCells = getter(lookup, roomClass, "roomCells", Object.class);
+                exitCells = getter(lookup, roomClass, "exitCells", Object.class);
+                exitComponents = getter(lookup, roomClass, "exitComponents", int.class);
+                maxExitComponentSize = getter(lookup, roomClass, "maxExitComponentSize", int.class);
+                sealed = getter(lookup, roomClass, "sealed", boolean.class);
+                standableCount = getter(lookup, roomClass, "standableCount", int.class);
+                placeableCount = getter(lookup, roomClass, "placeableCount", int.class);
+                privateBestScore = getter(lookup, roomClass, "privateBestScore", int.class);
+                idealPrivateCount = getter(lookup, roomClass, "idealPrivateCount", int.class);
+                roomCount = getter(lookup, roomClass, "roomCount", int.class);
+                blastSafeBlocks = getter(lookup, roomClass, "blastSafeBlocks", Object.class);
+
+                Method computeMethod = brScanner.getDeclaredMethod("computeBlastSafe", ClientWorld.class, roomClass);
+                computeMethod.setAccessible(true);
+                computeBlastSafe = lookup.unreflect(computeMethod)
+                        .asType(MethodType.methodType(void.class, ClientWorld.class, Object.class));
+
+                Class<?> cfgClass = Class.forName("com.bedrockrooms.config.BRConfig");
+                cfgInstance = lookup.unreflectGetter(cfgClass.getField("INSTANCE"))
+                        .asType(MethodType.methodType(Object.class));
+                minBlastSafeCellsToShow = getter(lookup, cfgClass, "minBlastSafeCellsToShow", int.class);
+                try {
+                    minIdealPrivateCellsToShow = getter(lookup, cfgClass, "accurateDamageMinBlastSafeCellsToShow", int.class);
+                } catch (NoSuchFieldException e) {
+                    minIdealPrivateCellsToShow = null;
+                }
+                yMax = getter(lookup, cfgClass, "yMax", int.class);
+            } catch (Throwable t) {
+                failure = t;
+            }
+            FAILURE = failure;
+            GET_ROOMS = getRooms;
+            ROOM_ID = roomId;
+            CENTER_X = centerX;
+            CENTER_Y = centerY;
+            CENTER_Z = centerZ;
+            ROOM_CELLS = roomCells;
+            EXIT_CELLS = exitCells;
+            EXIT_COMPONENTS = exitComponents;
+            MAX_EXIT_COMPONENT_SIZE = maxExitComponentSize;
+            SEALED = sealed;
+            STANDABLE_COUNT = standableCount;
+            PLACEABLE_COUNT = placeableCount;
+            PRIVATE_BEST_SCORE = privateBestScore;
+            IDEAL_PRIVATE_COUNT = idealPrivateCount;
+            ROOM_COUNT = roomCount;
+            BLAST_SAFE_BLOCKS = blastSafeBlocks;
+            COMPUTE_BLAST_SAFE = computeBlastSafe;
+            CFG_INSTANCE = cfgInstance;
+            MIN_BLAST_SAFE_CELLS_TO_SHOW = minBlastSafeCellsToShow;
+            MIN_IDEAL_PRIVATE_CELLS_TO_SHOW = minIdealPrivateCellsToShow;
+            Y_MAX = yMax;
+        }
+
+        // Binds with the field's declared type. A primitive we read differently (a wider or boxed
+        // number) goes through a Number conversion, the way plain reflection used to read it.
+        private static MethodHandle getter(MethodHandles.Lookup lookup, Class<?> owner, String name, Class<?> type)
+                throws ReflectiveOperationException {
+            Field field = owner.getField(name);
+            MethodHandle handle = lookup.unreflectGetter(field);
+            if (field.getType() == type || !type.isPrimitive()) {
+                return handle.asType(MethodType.methodType(type, Object.class));
+            }
+            MethodHandle convert = MethodHandles.lookup().findStatic(BrHandles.class, type == boolean.class ? "toBoolean" : "toNumber",
+                    MethodType.methodType(type == boolean.class ? boolean.class : Number.class, Object.class));
+            handle = MethodHandles.filterReturnValue(handle.asType(MethodType.methodType(Object.class, Object.class)), convert);
+            if (type == boolean.class) {
+                return handle;
+            }
+            MethodHandle unbox = MethodHandles.publicLookup().findVirtual(Number.class, type.getName() + "Value", MethodType.methodType(type));
+            return MethodHandles.filterReturnValue(handle, unbox);
+        }
+
+        private static Number toNumber(Object value) {
+            return (Number) value;
+        }
+
+        private static boolean toBoolean(Object value) {
+            return value instanceof Number ? ((Number) value).intValue() != 0 : (Boolean) value;
+        }
+    }
 }
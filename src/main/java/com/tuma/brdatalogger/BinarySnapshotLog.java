@@ -0,0 +1,258 @@
+package com.tuma.brdatalogger;
+
+import com.tuma.brdatalogger.BRDataLoggerClient.Bounds;
+import com.tuma.brdatalogger.BRDataLoggerClient.RoomSnapshot;
+import com.tuma.brdatalogger.BRDataLoggerClient.YMaxSnapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static com.tuma.brdatalogger.BRDataLoggerClient.LOGGER;
+
+final class BinarySnapshotLog {
+    static final String FILE_NAME = "bases.brlog";
+    private static final int MAGIC = 0x42524C47;
+    private static final short VERSION = 2;
+    private static final short PREALLOCATED_VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 150;
+    private static final int READ_RECORDS = 8192;
+    private static final int COUNT_OFFSET = 8;
+    private static final int FLAGS_OFFSET = 24;
+    // Set when the log misses rows the text logs have; export and index rebuilds then read the text.
+    private static final int INCOMPLETE = 1;
+
+    private final Path file;
+    private final FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 64);
+    private long count;
+
+    private BinarySnapshotLog(Path file, FileChannel channel, long count) {
+        this.file = file;
+        this.channel = channel;
+        this.count = count;
+    }
+
+    // The file length is the record count: a torn record at the end is cut off here. Version 1
+    // files grew in zero-filled windows, so their header count is trusted once to trim them.
+    static BinarySnapshotLog open(Path file, boolean complete) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                channel.truncate(0L);
+                header.putInt(0, MAGIC);
+                header.putShort(4, VERSION);
+                header.putShort(6, (short) RECORD_SIZE);
+                header.putLong(16, System.currentTimeMillis());
+                header.putInt(FLAGS_OFFSET, complete ? 0 : INCOMPLETE);
+                writeFully(channel, header, 0L);
+                return new BinarySnapshotLog(file, channel, 0L);
+            }
+            channel.read(header, 0L);
+            short version = header.getShort(4);
+            if (header.getInt(0) != MAGIC || header.getShort(6) != RECORD_SIZE
+                    || (version != VERSION && version != PREALLOCATED_VERSION)) {
+                throw new IOException("Unsupported binary log format in " + file);
+            }
+            long count = (size - HEADER_SIZE) / RECORD_SIZE;
+            if (version == PREALLOCATED_VERSION) {
+                count = Math.min(count, header.getLong(COUNT_OFFSET));
+                header.putShort(4, VERSION);
+                writeFully(channel, header, 0L);
+            }
+            channel.truncate(HEADER_SIZE + count * RECORD_SIZE);
+            return new BinarySnapshotLog(file, channel, count);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    void append(List<RoomSnapshot> snapshots) throws IOException {
+        int size = snapshots.size() * RECORD_SIZE;
+        if (buffer.capacity() < size) {
+            buffer = ByteBuffer.allocate(Integer.highestOneBit(size - 1) << 1);
+        }
+        buffer.clear();
+        for (RoomSnapshot snapshot : snapshots) {
+            encode(snapshot, buffer);
+        }
+        buffer.flip();
+        long end = HEADER_SIZE + count * RECORD_SIZE;
+        try {
+            writeFully(channel, buffer, end);
+        } catch (IOException e) {
+            // Records of the failed batch that did get written must not survive a reopen.
+            try {
+                channel.truncate(end);
+            } catch (IOException undo) {
+                e.addSuppressed(undo);
+            }
+            throw e;
+        }
+        count += snapshots.size();
+    }
+
+    // Best effort; a log that cannot even be flagged is deleted, which readers treat the same.
+    static void markIncomplete(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer flags = ByteBuffer.allocate(4);
+            flags.putInt(0, INCOMPLETE);
+            writeFully(channel, flags, FLAGS_OFFSET);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException undo) {
+                LOGGER.warn("Failed to mark {} incomplete", file, undo);
+            }
+        }
+    }
+
+    static boolean isComplete(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            }
+            return header.position() == HEADER_SIZE && header.getInt(0) == MAGIC
+                    && (header.getInt(FLAGS_OFFSET) & INCOMPLETE) == 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer data, long position) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data, position + data.position());
+        }
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    void close(boolean force) {
+        try {
+            if (force) {
+                force();
+            }
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.debug("Failed to close {}", file, e);
+        }
+    }
+
+    private static void encode(RoomSnapshot s, ByteBuffer out) {
+        out.putLong(s.timestampNanos);
+        out.putLong(s.roomId);
+        out.putDouble(s.centerX);
+        out.putDouble(s.centerY);
+        out.putDouble(s.centerZ);
+        out.putInt(s.minX);
+        out.putInt(s.maxX);
+        out.putInt(s.minY);
+        out.putInt(s.maxY);
+        out.putInt(s.minZ);
+        out.putInt(s.maxZ);
+        out.putInt(s.roomCells);
+        out.putInt(s.exitCells);
+        out.putInt(s.exitPercent);
+        out.putInt(s.standableCount);
+        out.putInt(s.placeableCount);
+        out.put((byte) (s.sealed ? 1 : 0));
+        out.putInt(s.exitComponents);
+        out.putInt(s.maxExitComponentSize);
+        out.putInt(s.privateBestScore);
+        out.putInt(s.blastSafeCells);
+        out.putDouble(s.blastSafePercent);
+        out.putInt(s.idealPrivateCount);
+        out.putInt(s.yMax.yMax);
+        out.putInt(s.yMax.pad);
+        out.putInt(s.yMax.width);
+        out.putInt(s.yMax.depth);
+        out.putInt(s.yMax.loaded);
+        out.putInt(s.yMax.skipped);
+        out.putInt(s.yMax.bedrock);
+        out.putInt(s.yMax.air);
+        out.putInt(s.yMax.other);
+        out.put((byte) 0);
+    }
+
+    private static RoomSnapshot decode(String profile, ByteBuffer in) {
+        long nanos = in.getLong();
+        Instant capturedAt = Instant.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L), Math.floorMod(nanos, 1_000_000_000L));
+        long roomId = in.getLong();
+        double centerX = in.getDouble();
+        double centerY = in.getDouble();
+        double centerZ = in.getDouble();
+        int minX = in.getInt();
+        int maxX = in.getInt();
+        int minY = in.getInt();
+        int maxY = in.getInt();
+        int minZ = in.getInt();
+        int maxZ = in.getInt();
+        Bounds bounds = new Bounds(minX, maxX, minY, maxY, minZ, maxZ);
+        int roomCells = in.getInt();
+        int exitCells = in.getInt();
+        int exitPercent = in.getInt();
+        int standableCount = in.getInt();
+        int placeableCount = in.getInt();
+        boolean sealed = in.get() != 0;
+        int exitComponents = in.getInt();
+        int maxExitComponentSize = in.getInt();
+        int privateBestScore = in.getInt();
+        int blastSafeCells = in.getInt();
+        double blastSafePercent = in.getDouble();
+        int idealPrivateCount = in.getInt();
+        YMaxSnapshot yMax = new YMaxSnapshot(in.getInt(), in.getInt(), in.getInt(), in.getInt(), in.getInt(),
+                in.getInt(), in.getInt(), in.getInt(), in.getInt());
+        in.get();
+        return new RoomSnapshot(capturedAt, profile, roomId, centerX, centerY, centerZ, bounds, roomCells, exitCells,
+                exitPercent, standableCount, placeableCount, sealed, exitComponents, maxExitComponentSize,
+                privateBestScore, blastSafeCells, blastSafePercent, idealPrivateCount, yMax);
+    }
+
+    static long read(Path file, String profile, Consumer<RoomSnapshot> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(head, 0L);
+            head.flip();
+            short version = head.remaining() < HEADER_SIZE ? 0 : head.getShort(4);
+            if (head.remaining() < HEADER_SIZE || head.getInt(0) != MAGIC || head.getShort(6) != RECORD_SIZE
+                    || (version != VERSION && version != PREALLOCATED_VERSION)) {
+                throw new IOException("Unsupported binary log format in " + file);
+            }
+            long total = (channel.size() - HEADER_SIZE) / RECORD_SIZE;
+            if (version == PREALLOCATED_VERSION) {
+                total = Math.min(total, head.getLong(COUNT_OFFSET));
+            }
+            ByteBuffer chunk = ByteBuffer.allocate(READ_RECORDS * RECORD_SIZE);
+            long done = 0L;
+            while (done < total) {
+                int records = (int) Math.min(READ_RECORDS, total - done);
+                chunk.clear().limit(records * RECORD_SIZE);
+                long position = HEADER_SIZE + done * RECORD_SIZE;
+                while (chunk.hasRemaining()) {
+                    int n = channel.read(chunk, position + chunk.position());
+                    if (n < 0) {
+                        throw new IOException("Unexpected end of " + file);
+                    }
+                }
+                chunk.flip();
+                for (int i = 0; i < records; i++) {
+                    consumer.accept(decode(profile, chunk));
+                }
+                done += records;
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.tuma.brdatalogger;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+
+// Blast-safe counts keyed by room content. Block updates and chunk loads near an entry drop
+// it; the client thread only records dirty sections, the analysis thread applies them.
+final class BlastSafeCache {
+    private static final int MAX_ENTRIES = 4096;
+    // Explosion reach around the room that still changes which cells are blast-safe.
+    private static final int MARGIN = 8;
+    private static final int MAX_DIRTY = 65_536;
+
+    private final Long2ObjectLinkedOpenHashMap<Entry> entries = new Long2ObjectLinkedOpenHashMap<>();
+    private final Long2ObjectOpenHashMap<LongOpenHashSet> byColumn = new Long2ObjectOpenHashMap<>();
+    private final LongArrayList stale = new LongArrayList();
+    private final Object dirtyLock = new Object();
+    private LongOpenHashSet dirtySections = new LongOpenHashSet();
+    private LongOpenHashSet dirtyColumns = new LongOpenHashSet();
+    private LongOpenHashSet spareSections = new LongOpenHashSet();
+    private LongOpenHashSet spareColumns = new LongOpenHashSet();
+    private boolean dirtyOverflow;
+    private volatile boolean dirty;
+
+    Entry get(long contentKey) {
+        applyDirty();
+        return entries.getAndMoveToLast(contentKey);
+    }
+
+    void put(RoomCapture c) {
+        Entry entry = entries.getAndMoveToLast(c.contentKey);
+        if (entry == null) {
+            entry = new Entry(c.contentKey);
+            entries.putAndMoveToLast(c.contentKey, entry);
+            if (entries.size() > MAX_ENTRIES) {
+                unindex(entries.removeFirst());
+            }
+        } else {
+            unindex(entry);
+        }
+        entry.count = c.blastSafeCount;
+        entry.hash = c.blastSafeHash;
+        entry.minSectionX = (c.minX - MARGIN) >> 4;
+        entry.maxSectionX = (c.maxX + MARGIN) >> 4;
+        entry.minSectionY = (c.minY - MARGIN) >> 4;
+        entry.maxSectionY = (c.maxY + MARGIN) >> 4;
+        entry.minSectionZ = (c.minZ - MARGIN) >> 4;
+        entry.maxSectionZ = (c.maxZ + MARGIN) >> 4;
+        index(entry);
+        // After storing: an update that raced with the computation drops the entry again.
+        applyDirty();
+    }
+
+    // Client thread.
+    void onBlockUpdate(BlockPos pos) {
+        synchronized (dirtyLock) {
+            if (!dirtyOverflow && dirtySections.add(BlockPos.asLong(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4))) {
+                dirtyOverflow = dirtySections.size() > MAX_DIRTY;
+            }
+        }
+        dirty = true;
+    }
+
+    // Client thread: a chunk that was unloaded may have changed without us seeing it.
+    void onChunkChanged(ChunkPos pos) {
+        synchronized (dirtyLock) {
+            if (!dirtyOverflow && dirtyColumns.add(BlockPos.asLong(pos.x, 0, pos.z))) {
+                dirtyOverflow = dirtyColumns.size() > MAX_DIRTY;
+            }
+        }
+        dirty = true;
+    }
+
+    private void applyDirty() {
+        if (!dirty) {
+            return;
+        }
+        LongOpenHashSet sections;
+        LongOpenHashSet columns;
+        boolean overflow;
+        synchronized (dirtyLock) {
+            sections = dirtySections;
+            columns = dirtyColumns;
+            overflow = dirtyOverflow;
+            dirtySections = spareSections;
+            dirtyColumns = spareColumns;
+            dirtyOverflow = false;
+            dirty = false;
+        }
+        if (overflow) {
+            entries.clear();
+            byColumn.clear();
+        } else if (!entries.isEmpty()) {
+            collectStale(sections, columns);
+            for (int i = 0; i < stale.size(); i++) {
+                Entry entry = entries.remove(stale.getLong(i));
+                if (entry != null) {
+                    unindex(entry);
+                }
+            }
+            stale.clear();
+        }
+        sections.clear();
+        columns.clear();
+        synchronized (dirtyLock) {
+            spareSections = sections;
+            spareColumns = columns;
+        }
+    }
+
+    private void collectStale(LongOpenHashSet sections, LongOpenHashSet columns) {
+        LongIterator it = sections.iterator();
+        while (it.hasNext()) {
+            long key = it.nextLong();
+            int sy = BlockPos.unpackLongY(key);
+            LongOpenHashSet keys = byColumn.get(BlockPos.asLong(BlockPos.unpackLongX(key), 0, BlockPos.unpackLongZ(key)));
+            if (keys == null) {
+                continue;
+            }
+            LongIterator candidates = keys.iterator();
+            while (candidates.hasNext()) {
+                long contentKey = candidates.nextLong();
+                Entry entry = entries.get(contentKey);
+                if (entry != null && sy >= entry.minSectionY && sy <= entry.maxSectionY) {
+                    stale.add(contentKey);
+                }
+            }
+        }
+        it = columns.iterator();
+        while (it.hasNext()) {
+            LongOpenHashSet keys = byColumn.get(it.nextLong());
+            if (keys != null) {
+                stale.addAll(keys);
+            }
+        }
+    }
+
+    private void index(Entry entry) {
+        for (int cx = entry.minSectionX; cx <= entry.maxSectionX; cx++) {
+            for (int cz = entry.minSectionZ; cz <= entry.maxSectionZ; cz++) {
+                long column = BlockPos.asLong(cx, 0, cz);
+                LongOpenHashSet keys = byColumn.get(column);
+                if (keys == null) {
+                    keys = new LongOpenHashSet();
+                    byColumn.put(column, keys);
+                }
+                keys.add(entry.contentKey);
+            }
+        }
+    }
+
+    private void unindex(Entry entry) {
+        for (int cx = entry.minSectionX; cx <= entry.maxSectionX; cx++) {
+            for (int cz = entry.minSectionZ; cz <= entry.maxSectionZ; cz++) {
+                long column = BlockPos.asLong(cx, 0, cz);
+                LongOpenHashSet keys = byColumn.get(column);
+                if (keys != null && keys.remove(entry.contentKey) && keys.isEmpty()) {
+                    byColumn.remove(column);
+                }
+            }
+        }
+    }
+
+    void clear() {
+        entries.clear();
+        byColumn.clear();
+        synchronized (dirtyLock) {
+            dirtySections.clear();
+            dirtyColumns.clear();
+            dirtyOverflow = false;
+            dirty = false;
+        }
+    }
+
+    static final class Entry {
+        private final long contentKey;
+        int count;
+        long hash;
+        // Chunk sections (x, y, z >> 4) whose blocks the count depends on.
+        private int minSectionX;
+        private int maxSectionX;
+        private int minSectionY;
+        private int maxSectionY;
+        private int minSectionZ;
+        private int maxSectionZ;
+
+        private Entry(long contentKey) {
+            this.contentKey = contentKey;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.tuma.brdatalogger;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static com.tuma.brdatalogger.BRDataLoggerClient.SCHEDULER;
+
+// Client thread side of the deferred blast-safe computation.
+final class BlastSafeQueue {
+    private final ConcurrentLinkedQueue<Long> requests = new ConcurrentLinkedQueue<>();
+    private final LongOpenHashSet wanted = new LongOpenHashSet();
+    private long budgetNanos;
+    private long spentNanos;
+
+    void request(long roomId) {
+        requests.add(roomId);
+    }
+
+    void beginTick(long budgetNanos) {
+        Long roomId;
+        while ((roomId = requests.poll()) != null) {
+            wanted.add(roomId.longValue());
+            SCHEDULER.markPending(roomId);
+        }
+        this.budgetNanos = budgetNanos;
+        spentNanos = 0L;
+    }
+
+    boolean mayCompute(long roomId) {
+        return spentNanos < budgetNanos && wanted.contains(roomId);
+    }
+
+    void settle(long roomId, long nanos) {
+        spentNanos += nanos;
+        if (!wanted.isEmpty()) {
+            wanted.remove(roomId);
+        }
+    }
+
+    // At the start of a pass: a room that is no longer pending was captured by an earlier
+    // pass and either settled or asked again, so only the pending ones are still wanted.
+    void retain(LongOpenHashSet pending) {
+        if (!wanted.isEmpty()) {
+            wanted.retainAll(pending);
+        }
+    }
+
+    void reset() {
+        requests.clear();
+        wanted.clear();
+    }
+}
@@ -0,0 +1,89 @@
+package com.tuma.brdatalogger;
+
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+
+// Client thread: the last full copy of each room, reused while its cells hash the same.
+final class CaptureCache {
+    private final Long2ObjectOpenHashMap<Entry> entries = new Long2ObjectOpenHashMap<>();
+
+    static long fingerprint(LongCollection cells, LongCollection exits, LongCollection blastSafe) {
+        long h = RoomGeometry.combine(content(cells, 0L), content(exits, RoomGeometry.EXIT_SEED));
+        return RoomGeometry.combine(h, content(blastSafe, RoomGeometry.BLAST_SAFE_SEED));
+    }
+
+    private static long content(LongCollection cells, long seed) {
+        return cells == null ? -1L : RoomGeometry.combine(RoomGeometry.hashKeys(cells, seed), cells.size());
+    }
+
+    Entry get(long roomId, long fingerprint) {
+        Entry entry = entries.get(roomId);
+        if (entry == null || !entry.hashed || entry.fingerprint != fingerprint) {
+            return null;
+        }
+        return entry;
+    }
+
+    Entry put(RoomCapture c, long fingerprint) {
+        Entry entry = new Entry(fingerprint, c);
+        entries.put(c.roomId, entry);
+        return entry;
+    }
+
+    void retain(Long2LongOpenHashMap rooms) {
+        entries.keySet().retainAll(rooms.keySet());
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    static final class Entry {
+        private final long fingerprint;
+        private final int cellCount;
+        private final int exitCount;
+        private final int minX;
+        private final int maxX;
+        private final int minY;
+        private final int maxY;
+        private final int minZ;
+        private final int maxZ;
+        // Written by the analysis thread once the copy is hashed; hashed publishes both.
+        private long contentKey;
+        private long blastSafeHash;
+        private volatile boolean hashed;
+
+        private Entry(long fingerprint, RoomCapture c) {
+            this.fingerprint = fingerprint;
+            this.cellCount = c.cellCount;
+            this.exitCount = c.exitCount;
+            this.minX = c.minX;
+            this.maxX = c.maxX;
+            this.minY = c.minY;
+            this.maxY = c.maxY;
+            this.minZ = c.minZ;
+            this.maxZ = c.maxZ;
+        }
+
+        void publish(long contentKey, long blastSafeHash) {
+            this.contentKey = contentKey;
+            this.blastSafeHash = blastSafeHash;
+            this.hashed = true;
+        }
+
+        void applyTo(RoomCapture c) {
+            c.cellCount = cellCount;
+            c.exitCount = exitCount;
+            c.minX = minX;
+            c.maxX = maxX;
+            c.minY = minY;
+            c.maxY = maxY;
+            c.minZ = minZ;
+            c.maxZ = maxZ;
+            c.contentKey = contentKey;
+            c.blastSafeHash = blastSafeHash;
+            c.hashed = true;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.tuma.brdatalogger;
+
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.PalettedContainer;
+import net.minecraft.world.chunk.WorldChunk;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+final class ChunkLayer {
+    private static final Predicate<net.minecraft.block.BlockState> AIR_OR_LAVA = ChunkLayer::isAirOrLava;
+    private static final Predicate<net.minecraft.block.BlockState> NOT_AIR_OR_LAVA = st -> !isAirOrLava(st);
+    private static final Predicate<net.minecraft.block.BlockState> BEDROCK = st -> st.isOf(net.minecraft.block.Blocks.BEDROCK);
+    private static final Predicate<net.minecraft.block.BlockState> NOT_BEDROCK = st -> !st.isOf(net.minecraft.block.Blocks.BEDROCK);
+
+    final long[] bedrock = new long[4];
+    final long[] airOrLava = new long[4];
+
+    // Bit (z << 4 | x) of the 256-bit maps describes local column (x, z) at yMax.
+    static ChunkLayer classify(WorldChunk chunk, int yMax) {
+        ChunkLayer layer = new ChunkLayer();
+        ChunkSection[] sections = chunk.getSectionArray();
+        int index = chunk.getSectionIndex(yMax);
+        if (index < 0 || index >= sections.length || sections[index] == null || sections[index].isEmpty()) {
+            Arrays.fill(layer.airOrLava, -1L);
+            return layer;
+        }
+        PalettedContainer<net.minecraft.block.BlockState> states = sections[index].getBlockStateContainer();
+        if (!states.hasAny(NOT_AIR_OR_LAVA)) {
+            Arrays.fill(layer.airOrLava, -1L);
+            return layer;
+        }
+        boolean anyAirOrLava = states.hasAny(AIR_OR_LAVA);
+        if (!anyAirOrLava && !states.hasAny(NOT_BEDROCK)) {
+            Arrays.fill(layer.bedrock, -1L);
+            return layer;
+        }
+        if (!anyAirOrLava && !states.hasAny(BEDROCK)) {
+            return layer;
+        }
+        int localY = yMax & 15;
+        for (int z = 0; z < 16; ++z) {
+            for (int x = 0; x < 16; ++x) {
+                int bit = (z << 4) | x;
+                net.minecraft.block.BlockState st = states.get(x, localY, z);
+                if (isAirOrLava(st)) {
+                    layer.airOrLava[bit >> 6] |= 1L << (bit & 63);
+                } else if (st.isOf(net.minecraft.block.Blocks.BEDROCK)) {
+                    layer.bedrock[bit >> 6] |= 1L << (bit & 63);
+                }
+            }
+        }
+        return layer;
+    }
+
+    private static boolean isAirOrLava(net.minecraft.block.BlockState st) {
+        return st.isAir() || st.getFluidState().isIn(net.minecraft.registry.tag.FluidTags.LAVA);
+    }
+}
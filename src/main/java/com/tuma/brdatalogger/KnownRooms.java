@@ -0,0 +1,252 @@
+package com.tuma.brdatalogger;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+import static com.tuma.brdatalogger.BRDataLoggerClient.LOGGER;
+import static com.tuma.brdatalogger.BRDataLoggerClient.getProfileDir;
+import static com.tuma.brdatalogger.BRDataLoggerClient.replaceFile;
+
+// Rooms already logged for a profile, keyed by quantized bounds since roomId changes with
+// every rescan. Analysis thread only; mirrored in known_rooms.idx.
+final class KnownRooms {
+    static final String FILE_NAME = "known_rooms.idx";
+    private static final int MAGIC = 0x42524B52;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 28;
+    private static final int BOUNDS_SHIFT = 3;
+    private static final long COMPACT_SLACK = 1024L;
+
+    private final Long2LongOpenHashMap signatures = new Long2LongOpenHashMap();
+    private final Long2LongOpenHashMap layers = new Long2LongOpenHashMap();
+    private final Long2IntOpenHashMap loaded = new Long2IntOpenHashMap();
+    private final LongOpenHashSet skippedKeys = new LongOpenHashSet();
+    private String profile;
+    volatile int size;
+    volatile long skipped;
+
+    void load(String profile) {
+        if (Objects.equals(this.profile, profile)) {
+            return;
+        }
+        clear();
+        this.profile = profile;
+        if (profile == null || profile.isBlank()) {
+            return;
+        }
+        Path file = getProfileDir(profile).resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            read(file);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read known rooms {}", file, e);
+            clear();
+            this.profile = profile;
+        }
+    }
+
+    boolean isKnown(RoomCapture c) {
+        load(c.profile);
+        long key = key(c);
+        if (!signatures.containsKey(key) || signatures.get(key) != signature(c)) {
+            return false;
+        }
+        int knownLoaded = loaded.get(key);
+        if (c.loaded < knownLoaded || (c.loaded == knownLoaded && layers.get(key) == layer(c))) {
+            if (skippedKeys.add(key)) {
+                skipped = skippedKeys.size();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // Returns the record for the writer to append after the row, or null when the table
+    // keeps what it had.
+    byte[] remember(RoomCapture c) {
+        load(c.profile);
+        if (profile == null) {
+            return null;
+        }
+        long key = key(c);
+        long signature = signature(c);
+        if (signatures.containsKey(key) && signatures.get(key) == signature && c.loaded < loaded.get(key)) {
+            // a forced dump of a partial scan; keep the fuller record
+            return null;
+        }
+        long layer = layer(c);
+        put(key, signature, layer, c.loaded);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        encode(record, key, signature, layer, c.loaded);
+        return record.array();
+    }
+
+    // Drops a record whose row never reached disk, unless a later one has replaced it.
+    void forget(String profile, byte[] record) {
+        if (record == null || !Objects.equals(this.profile, profile)) {
+            return;
+        }
+        ByteBuffer in = ByteBuffer.wrap(record);
+        long key = in.getLong();
+        if (signatures.containsKey(key) && signatures.get(key) == in.getLong() && layers.get(key) == in.getLong()) {
+            signatures.remove(key);
+            layers.remove(key);
+            loaded.remove(key);
+            size = signatures.size();
+        }
+    }
+
+    private void put(long key, long signature, long layer, int roomLoaded) {
+        signatures.put(key, signature);
+        layers.put(key, layer);
+        loaded.put(key, roomLoaded);
+        size = signatures.size();
+    }
+
+    private void clear() {
+        signatures.clear();
+        layers.clear();
+        loaded.clear();
+        skippedKeys.clear();
+        profile = null;
+        size = 0;
+        skipped = 0L;
+    }
+
+    // Bounds rounded to 8 blocks, so a rescan that trims an edge still finds the room.
+    static long key(RoomCapture c) {
+        return key(c.minX, c.maxX, c.minY, c.maxY, c.minZ, c.maxZ);
+    }
+
+    static long key(int minX, int maxX, int minY, int maxY, int minZ, int maxZ) {
+        long min = ((long) (minX >> BOUNDS_SHIFT) << 32) | ((minZ >> BOUNDS_SHIFT) & 0xFFFFFFFFL);
+        long max = ((long) (maxX >> BOUNDS_SHIFT) << 32) | ((maxZ >> BOUNDS_SHIFT) & 0xFFFFFFFFL);
+        long y = ((long) (minY >> BOUNDS_SHIFT) << 32) | ((maxY >> BOUNDS_SHIFT) & 0xFFFFFFFFL);
+        return RoomGeometry.combine(RoomGeometry.combine(min, max), y);
+    }
+
+    private static long signature(RoomCapture c) {
+        long signature = RoomGeometry.combine(c.contentKey, c.blastSafeHash);
+        return RoomGeometry.combine(signature, ((long) c.idealPrivateCount << 32) | (c.blastSafeCount & 0xFFFFFFFFL));
+    }
+
+    private static long layer(RoomCapture c) {
+        return RoomGeometry.combine(((long) c.bedrock << 32) | (c.air & 0xFFFFFFFFL), c.skipped);
+    }
+
+    // Later records for a key replace earlier ones; returns how many records the file holds.
+    private long read(Path file) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer chunk = ByteBuffer.allocate(RECORD_SIZE * 4096);
+            while (chunk.position() < HEADER_SIZE && in.read(chunk) >= 0) {
+            }
+            if (chunk.position() < HEADER_SIZE || chunk.getInt(0) != MAGIC || chunk.getInt(4) != VERSION
+                    || chunk.getInt(8) != RECORD_SIZE) {
+                throw new IOException("Unsupported known rooms format in " + file);
+            }
+            chunk.flip();
+            chunk.position(HEADER_SIZE);
+            long records = 0L;
+            while (true) {
+                while (chunk.remaining() >= RECORD_SIZE) {
+                    put(chunk.getLong(), chunk.getLong(), chunk.getLong(), chunk.getInt());
+                    records++;
+                }
+                chunk.compact();
+                if (in.read(chunk) < 0) {
+                    // a torn record at the end is cut off by the next append
+                    return records;
+                }
+                chunk.flip();
+            }
+        }
+    }
+
+    // Opens the file for appending after the last whole record, first compacting it if most
+    // of its records have been superseded.
+    static FileChannel openAppend(Path file) throws IOException {
+        if (Files.exists(file)) {
+            KnownRooms table = new KnownRooms();
+            try {
+                long records = table.read(file);
+                if (records > 2L * table.signatures.size() + COMPACT_SLACK) {
+                    table.rewrite(file);
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Replacing unreadable known rooms {}", file, e);
+                Files.delete(file);
+            }
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                channel.truncate(0L);
+                ByteBuffer header = header();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                size = HEADER_SIZE;
+            }
+            long end = HEADER_SIZE + (size - HEADER_SIZE) / RECORD_SIZE * RECORD_SIZE;
+            channel.truncate(end);
+            channel.position(end);
+            return channel;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void rewrite(Path file) throws IOException {
+        Path tempFile = file.resolveSibling(FILE_NAME + ".tmp");
+        try (FileChannel out = FileChannel.open(tempFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(header());
+            ByteBuffer chunk = ByteBuffer.allocate(RECORD_SIZE * 4096);
+            for (Long2LongMap.Entry entry : signatures.long2LongEntrySet()) {
+                if (chunk.remaining() < RECORD_SIZE) {
+                    chunk.flip();
+                    while (chunk.hasRemaining()) {
+                        out.write(chunk);
+                    }
+                    chunk.clear();
+                }
+                long key = entry.getLongKey();
+                encode(chunk, key, entry.getLongValue(), layers.get(key), loaded.get(key));
+            }
+            chunk.flip();
+            while (chunk.hasRemaining()) {
+                out.write(chunk);
+            }
+        }
+        replaceFile(tempFile, file);
+    }
+
+    private static ByteBuffer header() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(0);
+        header.flip();
+        return header;
+    }
+
+    private static void encode(ByteBuffer out, long key, long signature, long layer, int roomLoaded) {
+        out.putLong(key);
+        out.putLong(signature);
+        out.putLong(layer);
+        out.putInt(roomLoaded);
+    }
+}
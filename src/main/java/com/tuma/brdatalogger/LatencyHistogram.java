@@ -0,0 +1,107 @@
+package com.tuma.brdatalogger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.tuma.brdatalogger.BRDataLoggerClient.config;
+
+// Log-linear buckets over nanoseconds, 16 steps per power of two. Safe from any thread.
+final class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_COUNT;
+
+    final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    final LongAdder totalNanos = new LongAdder();
+    final AtomicLong max = new AtomicLong();
+
+    LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    void record(long startNanos) {
+        if (startNanos != 0L) {
+            recordNanos(System.nanoTime() - startNanos);
+        }
+    }
+
+    void recordNanos(long nanos) {
+        if (!config.latencyStats) {
+            return;
+        }
+        nanos = Math.max(0L, nanos);
+        buckets.getAndIncrement(bucket(nanos));
+        totalNanos.add(nanos);
+        if (nanos > max.get()) {
+            max.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    private static int bucket(long nanos) {
+        if (nanos < SUB_COUNT) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_COUNT + SUB_BITS - 1;
+        return (long) (SUB_COUNT + bucket % SUB_COUNT) << (exponent - SUB_BITS);
+    }
+
+    private static long upperBound(int bucket) {
+        return bucket + 1 < BUCKETS ? lowerBound(bucket + 1) - 1 : Long.MAX_VALUE;
+    }
+
+    long[] snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return counts;
+    }
+
+    static long total(long[] counts) {
+        long total = 0L;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    // Upper edge of the bucket holding the given fraction of samples, capped at the max.
+    long percentile(long[] counts, double fraction) {
+        long total = total(counts);
+        if (total == 0L) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(fraction * total));
+        long seen = 0L;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0L);
+        }
+        totalNanos.reset();
+        max.set(0L);
+    }
+}
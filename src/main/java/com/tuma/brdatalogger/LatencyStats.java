@@ -0,0 +1,93 @@
+package com.tuma.brdatalogger;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static com.tuma.brdatalogger.BRDataLoggerClient.GSON;
+import static com.tuma.brdatalogger.BRDataLoggerClient.config;
+
+// Latency of each logger stage.
+final class LatencyStats {
+    final LatencyHistogram capture = new LatencyHistogram("capture");
+    final LatencyHistogram fields = new LatencyHistogram("fields");
+    final LatencyHistogram blastSafe = new LatencyHistogram("blastSafe");
+    final LatencyHistogram bounds = new LatencyHistogram("bounds");
+    final LatencyHistogram layers = new LatencyHistogram("layers");
+    final LatencyHistogram yMax = new LatencyHistogram("yMax");
+    final LatencyHistogram dedupe = new LatencyHistogram("dedupe");
+    final LatencyHistogram serialize = new LatencyHistogram("serialize");
+    final LatencyHistogram io = new LatencyHistogram("io");
+    final LatencyHistogram tick = new LatencyHistogram("tick");
+    final LatencyHistogram pass = new LatencyHistogram("pass");
+    private final LatencyHistogram[] all = {capture, fields, blastSafe, bounds, layers, yMax, dedupe, serialize, io, tick, pass};
+
+    // 0 when disabled, which every record() call ignores.
+    long start() {
+        return config.latencyStats ? System.nanoTime() : 0L;
+    }
+
+    List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        for (LatencyHistogram histogram : all) {
+            long[] counts = histogram.snapshot();
+            long count = LatencyHistogram.total(counts);
+            if (count == 0L) {
+                continue;
+            }
+            lines.add(String.format(Locale.ROOT, "%-9s n=%d p50=%s p99=%s max=%s", histogram.name, count,
+                    formatNanos(histogram.percentile(counts, 0.50)),
+                    formatNanos(histogram.percentile(counts, 0.99)),
+                    formatNanos(histogram.max.get())));
+        }
+        return lines;
+    }
+
+    String toJson() {
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("capturedAt", Instant.now().toString());
+        root.put("enabled", config.latencyStats);
+        List<Map<String, Object>> stages = new ArrayList<>();
+        for (LatencyHistogram histogram : all) {
+            long[] counts = histogram.snapshot();
+            long count = LatencyHistogram.total(counts);
+            Map<String, Object> stage = new LinkedHashMap<>();
+            stage.put("name", histogram.name);
+            stage.put("count", count);
+            stage.put("totalNanos", histogram.totalNanos.sum());
+            stage.put("p50Nanos", histogram.percentile(counts, 0.50));
+            stage.put("p90Nanos", histogram.percentile(counts, 0.90));
+            stage.put("p99Nanos", histogram.percentile(counts, 0.99));
+            stage.put("maxNanos", histogram.max.get());
+            List<long[]> buckets = new ArrayList<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0L) {
+                    buckets.add(new long[]{LatencyHistogram.lowerBound(i), counts[i]});
+                }
+            }
+            stage.put("buckets", buckets);
+            stages.add(stage);
+        }
+        root.put("stages", stages);
+        return GSON.toJson(root);
+    }
+
+    void reset() {
+        for (LatencyHistogram histogram : all) {
+            histogram.reset();
+        }
+    }
+
+    private static String formatNanos(long nanos) {
+        if (nanos < 1_000L) {
+            return nanos + "ns";
+        }
+        if (nanos < 1_000_000L) {
+            return String.format(Locale.ROOT, "%.1fus", nanos / 1_000.0);
+        }
+        return String.format(Locale.ROOT, "%.2fms", nanos / 1_000_000.0);
+    }
+}
@@ -0,0 +1,133 @@
+package com.tuma.brdatalogger;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// JFR events; disabled unless a recording turns them on.
+final class LoggerEvents {
+    private LoggerEvents() {
+    }
+
+    @Name("brdatalogger.Pass")
+    @Label("Logger Pass")
+    @Description("One pass over the BedrockRooms rooms, from the first capture to the last")
+    @Category("BR Data Logger")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class PassEvent extends Event {
+        @Label("Rooms Visited")
+        int rooms;
+        @Label("Rooms Captured")
+        int captured;
+        @Label("Forced Dump")
+        boolean forced;
+    }
+
+    @Name("brdatalogger.RoomSnapshot")
+    @Label("Room Snapshot")
+    @Description("Building a room snapshot and handing it to the writer")
+    @Category("BR Data Logger")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class RoomSnapshotEvent extends Event {
+        @Label("Room Id")
+        long roomId;
+        @Label("Cells")
+        int cells;
+        @Label("Exit Cells")
+        int exits;
+        @Label("Loaded yMax Columns")
+        int loaded;
+        @Label("Skipped yMax Columns")
+        int skipped;
+        @Label("Queued")
+        boolean queued;
+    }
+
+    @Name("brdatalogger.BlastSafe")
+    @Label("Blast-Safe Computation")
+    @Category("BR Data Logger")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class BlastSafeEvent extends Event {
+        @Label("Room Id")
+        long roomId;
+        @Label("Cells")
+        int cells;
+        @Label("Blast-Safe Cells")
+        int blastSafeCells;
+    }
+
+    @Name("brdatalogger.Write")
+    @Label("Logger Write")
+    @Description("One batch written to a profile's logs, with the sync if one was due")
+    @Category("BR Data Logger")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class WriteEvent extends Event {
+        @Label("Profile")
+        String profile;
+        @Label("Rows")
+        int rows;
+        @Label("Bytes Written")
+        @DataAmount
+        long bytes;
+        @Label("Synced")
+        boolean synced;
+    }
+
+    @Name("brdatalogger.PrettyWrite")
+    @Label("Pretty Snapshot Write")
+    @Description("The pending per-room pretty JSON files of one profile written and renamed into place")
+    @Category("BR Data Logger")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class PrettyWriteEvent extends Event {
+        @Label("Profile")
+        String profile;
+        @Label("Files")
+        int files;
+        @Label("Bytes Written")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("brdatalogger.SegmentRoll")
+    @Label("Segment Roll")
+    @Description("The active text logs of a profile closed and moved into a new segment")
+    @Category("BR Data Logger")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class SegmentRollEvent extends Event {
+        @Label("Segment")
+        String segment;
+        @Label("Bytes Moved")
+        @DataAmount
+        long bytes;
+        @Label("Daily Roll")
+        boolean daily;
+    }
+
+    @Name("brdatalogger.SegmentCompress")
+    @Label("Segment Compression")
+    @Description("The files of a closed segment gzipped on the compressor thread")
+    @Category("BR Data Logger")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class SegmentCompressEvent extends Event {
+        @Label("Segment")
+        String segment;
+        @Label("Bytes Read")
+        @DataAmount
+        long bytesIn;
+        @Label("Bytes Written")
+        @DataAmount
+        long bytesOut;
+    }
+}
@@ -0,0 +1,56 @@
+package com.tuma.brdatalogger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Power-of-two size classes with a few spare arrays each.
+final class LongArrayPool {
+    private static final long[] EMPTY = new long[0];
+    private static final int MIN_BITS = 6;
+    private static final int MAX_BITS = 20;
+    private static final int PER_CLASS = 4;
+    private static final long MAX_RETAINED_BYTES = 16L * 1024L * 1024L;
+
+    private final List<ArrayBlockingQueue<long[]>> classes = new ArrayList<>();
+    // Bytes held by arrays sitting in the pool, not by arrays handed out.
+    private final AtomicLong retained = new AtomicLong();
+
+    LongArrayPool() {
+        for (int bits = 0; bits <= MAX_BITS; bits++) {
+            classes.add(new ArrayBlockingQueue<>(PER_CLASS));
+        }
+    }
+
+    long[] acquire(int minLength) {
+        if (minLength <= 0) {
+            return EMPTY;
+        }
+        int bits = Math.max(MIN_BITS, 32 - Integer.numberOfLeadingZeros(minLength - 1));
+        if (bits > MAX_BITS) {
+            return new long[minLength];
+        }
+        long[] array = classes.get(bits).poll();
+        if (array == null) {
+            return new long[1 << bits];
+        }
+        retained.addAndGet(-8L * array.length);
+        return array;
+    }
+
+    void release(long[] array) {
+        if (array == null) {
+            return;
+        }
+        int length = array.length;
+        int bits = 31 - Integer.numberOfLeadingZeros(Math.max(1, length));
+        if (length != 1 << bits || bits < MIN_BITS || bits > MAX_BITS) {
+            return;
+        }
+        long bytes = 8L * length;
+        if (retained.addAndGet(bytes) > MAX_RETAINED_BYTES || !classes.get(bits).offer(array)) {
+            retained.addAndGet(-bytes);
+        }
+    }
+}
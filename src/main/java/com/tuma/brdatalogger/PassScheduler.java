@@ -0,0 +1,148 @@
+package com.tuma.brdatalogger;
+
+import com.tuma.brdatalogger.BRDataLoggerClient.PassContext;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.client.MinecraftClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.tuma.brdatalogger.BRDataLoggerClient.ANALYSIS;
+import static com.tuma.brdatalogger.BRDataLoggerClient.BLAST_SAFE_QUEUE;
+import static com.tuma.brdatalogger.BRDataLoggerClient.BR;
+import static com.tuma.brdatalogger.BRDataLoggerClient.CAPTURE_CACHE;
+import static com.tuma.brdatalogger.BRDataLoggerClient.captureRoom;
+
+// Spreads one pass over as many ticks as the per-tick budget needs. Changed and pending
+// rooms are captured first, unchanged ones in a second sweep.
+final class PassScheduler {
+    private final LongArrayList ids = new LongArrayList();
+    private final List<Object> rooms = new ArrayList<>();
+    private final IntArrayList unchanged = new IntArrayList();
+    private final LongOpenHashSet pending = new LongOpenHashSet();
+    private Long2LongOpenHashMap seen = new Long2LongOpenHashMap();
+    private Long2LongOpenHashMap nextSeen = new Long2LongOpenHashMap();
+    private Map<?, ?> byId;
+    private PassContext context;
+    private int size;
+    private int cursor;
+    private int deferredCursor;
+    private LoggerEvents.PassEvent event;
+    private int captured;
+
+    boolean isActive() {
+        return context != null;
+    }
+
+    void start(PassContext ctx, Iterable<?> all) {
+        ids.clear();
+        rooms.clear();
+        unchanged.clear();
+        nextSeen.clear();
+        byId = BR.getRoomsById();
+        BLAST_SAFE_QUEUE.retain(pending);
+        for (Object room : all) {
+            if (room == null) {
+                continue;
+            }
+            if (byId != null) {
+                ids.add(BR.peekRoomId(room));
+            } else {
+                rooms.add(room);
+            }
+        }
+        size = byId != null ? ids.size() : rooms.size();
+        context = ctx;
+        cursor = 0;
+        deferredCursor = 0;
+        captured = 0;
+        event = new LoggerEvents.PassEvent();
+        event.begin();
+    }
+
+    void step(MinecraftClient client, long deadlineNanos) {
+        if (context == null) {
+            return;
+        }
+        if (client.world != context.world) {
+            finish();
+            return;
+        }
+        List<RoomCapture> batch = new ArrayList<>();
+        while (cursor < size && System.nanoTime() < deadlineNanos) {
+            int index = cursor++;
+            Object room = room(index);
+            if (room == null) {
+                continue;
+            }
+            long roomId = BR.peekRoomId(room);
+            long fingerprint = BR.peekFingerprint(room);
+            nextSeen.put(roomId, fingerprint);
+            if (pending.remove(roomId) || !seen.containsKey(roomId) || seen.get(roomId) != fingerprint) {
+                capture(room, batch);
+            } else {
+                unchanged.add(index);
+            }
+        }
+        while (cursor >= size && deferredCursor < unchanged.size() && System.nanoTime() < deadlineNanos) {
+            Object room = room(unchanged.getInt(deferredCursor++));
+            if (room != null) {
+                capture(room, batch);
+            }
+        }
+        ANALYSIS.submit(batch);
+        if (cursor >= size && deferredCursor >= unchanged.size()) {
+            Long2LongOpenHashMap previous = seen;
+            seen = nextSeen;
+            nextSeen = previous;
+            // Rooms that were not in the pass are gone.
+            pending.retainAll(seen.keySet());
+            CAPTURE_CACHE.retain(seen);
+            finish();
+        }
+    }
+
+    private Object room(int index) {
+        return byId != null ? byId.get(ids.getLong(index)) : rooms.get(index);
+    }
+
+    private void capture(Object room, List<RoomCapture> batch) {
+        RoomCapture capture = captureRoom(room, context);
+        if (capture != null) {
+            batch.add(capture);
+            captured++;
+        }
+    }
+
+    void markPending(long roomId) {
+        pending.add(roomId);
+    }
+
+    private void finish() {
+        if (event != null && event.shouldCommit()) {
+            event.rooms = cursor;
+            event.captured = captured;
+            event.commit();
+        }
+        event = null;
+        ids.clear();
+        rooms.clear();
+        unchanged.clear();
+        byId = null;
+        context = null;
+        size = 0;
+        cursor = 0;
+        deferredCursor = 0;
+    }
+
+    void reset() {
+        finish();
+        pending.clear();
+        seen.clear();
+        CAPTURE_CACHE.clear();
+    }
+}
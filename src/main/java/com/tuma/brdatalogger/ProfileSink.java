@@ -0,0 +1,213 @@
+package com.tuma.brdatalogger;
+
+import com.tuma.brdatalogger.BRDataLoggerClient.RoomSnapshot;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.tuma.brdatalogger.BRDataLoggerClient.LOGGER;
+import static com.tuma.brdatalogger.BRDataLoggerClient.SEGMENT_COMPRESSOR;
+import static com.tuma.brdatalogger.BRDataLoggerClient.config;
+
+final class ProfileSink {
+    final Path dir;
+    final Path prettyDir;
+    private final SegmentManifest manifest;
+    FileChannel jsonl;
+    FileChannel csv;
+    FileChannel summary;
+    final Long2ObjectLinkedOpenHashMap<RoomSnapshot> prettyPending = new Long2ObjectLinkedOpenHashMap<>();
+    BinarySnapshotLog log;
+    FileChannel known;
+    long lastForceMs;
+
+    private ProfileSink(Path dir, Path prettyDir, SegmentManifest manifest) {
+        this.dir = dir;
+        this.prettyDir = prettyDir;
+        this.manifest = manifest;
+        this.lastForceMs = System.currentTimeMillis();
+    }
+
+    static ProfileSink open(Path dir) throws IOException {
+        Path prettyDir = dir.resolve("pretty");
+        Files.createDirectories(prettyDir);
+        ProfileSink sink = new ProfileSink(dir, prettyDir, SegmentManifest.load(dir));
+        sink.openText();
+        if (config.compressSegments) {
+            // picks up segments a previous run closed but did not get to compress
+            for (SegmentManifest.Segment segment : sink.manifest.uncompressed()) {
+                SEGMENT_COMPRESSOR.submit(sink.manifest, segment);
+            }
+        }
+        return sink;
+    }
+
+    private void openText() throws IOException {
+        FileChannel jsonl = null;
+        FileChannel csv = null;
+        try {
+            jsonl = openAppend(dir.resolve("bases.jsonl"));
+            csv = openAppend(dir.resolve("bases.csv"));
+            if (csv.size() == 0L) {
+                csv.write(ByteBuffer.wrap((RoomSnapshot.csvHeader() + System.lineSeparator()).getBytes(StandardCharsets.UTF_8)));
+            }
+            FileChannel summary = openAppend(dir.resolve("bases.txt"));
+            this.jsonl = jsonl;
+            this.csv = csv;
+            this.summary = summary;
+        } catch (IOException e) {
+            closeQuietly(jsonl);
+            closeQuietly(csv);
+            throw e;
+        }
+    }
+
+    // The active bases.* files move to segments/ once they pass segmentMaxBytes or the day
+    // they were started on is over. The binary log is not rolled; export reads it whole.
+    void rollIfNeeded(long now) throws IOException {
+        long size = jsonl.size();
+        if (size == 0L) {
+            return;
+        }
+        boolean full = config.segmentMaxBytes > 0L && size >= config.segmentMaxBytes;
+        boolean stale = config.segmentDaily && !SegmentManifest.sameDay(manifest.activeStartedMs(), now);
+        if (!full && !stale) {
+            return;
+        }
+        LoggerEvents.SegmentRollEvent event = new LoggerEvents.SegmentRollEvent();
+        event.begin();
+        closeText(SnapshotWriter.Durability.parse(config.durability) != SnapshotWriter.Durability.NONE);
+        SegmentManifest.Segment segment = manifest.prepare(now);
+        Path segmentDir = manifest.segmentDir();
+        List<String> moved = new ArrayList<>(SegmentManifest.EXTENSIONS.length);
+        try {
+            for (String ext : SegmentManifest.EXTENSIONS) {
+                Path active = dir.resolve("bases" + ext);
+                if (Files.exists(active)) {
+                    long bytes = Files.size(active);
+                    Files.move(active, segmentDir.resolve(segment.name + ext));
+                    moved.add(ext);
+                    event.bytes += bytes;
+                }
+            }
+            manifest.commit(segment);
+        } catch (IOException e) {
+            // Put back what was moved so the active files stay whole and the roll is retried.
+            for (String ext : moved) {
+                try {
+                    Files.move(segmentDir.resolve(segment.name + ext), dir.resolve("bases" + ext));
+                } catch (IOException undo) {
+                    LOGGER.warn("Failed to restore {} after a failed roll in {}", "bases" + ext, dir, undo);
+                }
+            }
+            throw e;
+        }
+        openText();
+        if (event.shouldCommit()) {
+            event.segment = segment.name;
+            event.daily = !full;
+            event.commit();
+        }
+        if (config.compressSegments) {
+            SEGMENT_COMPRESSOR.submit(manifest, segment);
+        }
+    }
+
+    private static FileChannel openAppend(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    // The active bases.jsonl is always among the files while the sink is open.
+    boolean hasTextRows() throws IOException {
+        return jsonl.size() > 0L || manifest.files(".jsonl").size() > 1;
+    }
+
+    long[] textSizes() throws IOException {
+        return new long[]{jsonl.size(), csv.size(), summary.size()};
+    }
+
+    // Best effort: cuts a failed batch off the text files so they end on the last whole batch.
+    void truncateText(long[] sizes) {
+        FileChannel[] channels = {jsonl, csv, summary};
+        for (int i = 0; i < channels.length; i++) {
+            try {
+                if (channels[i].size() > sizes[i]) {
+                    channels[i].truncate(sizes[i]);
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Failed to roll back a partial write in {}", dir, e);
+            }
+        }
+    }
+
+    void appendKnown(byte[] records) throws IOException {
+        if (known == null) {
+            known = KnownRooms.openAppend(dir.resolve(KnownRooms.FILE_NAME));
+        }
+        ByteBuffer data = ByteBuffer.wrap(records);
+        while (data.hasRemaining()) {
+            known.write(data);
+        }
+    }
+
+    void force() throws IOException {
+        jsonl.force(false);
+        csv.force(false);
+        summary.force(false);
+        if (known != null) {
+            known.force(false);
+        }
+        if (log != null) {
+            log.force();
+        }
+    }
+
+    void close(boolean force) {
+        if (force) {
+            try {
+                force();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to sync {}", dir, e);
+            }
+        }
+        closeQuietly(jsonl);
+        closeQuietly(csv);
+        closeQuietly(summary);
+        closeQuietly(known);
+        known = null;
+        if (log != null) {
+            log.close(false);
+            log = null;
+        }
+    }
+
+    private void closeText(boolean force) throws IOException {
+        if (force) {
+            jsonl.force(false);
+            csv.force(false);
+            summary.force(false);
+        }
+        closeQuietly(jsonl);
+        closeQuietly(csv);
+        closeQuietly(summary);
+    }
+
+    static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.debug("Failed to close channel.", e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.tuma.brdatalogger;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Scoreboard helper method handles per class, misses included.
+final class ReflectionCache {
+    private static final MethodHandle MISSING = MethodHandles.identity(Object.class);
+
+    private final ClassValue<Map<Key, MethodHandle>> byClass = new ClassValue<>() {
+        @Override
+        protected Map<Key, MethodHandle> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+    final LongAdder hits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+
+    MethodHandle getter(Class<?> owner, String name) {
+        return find(owner, name, null, 0, false);
+    }
+
+    MethodHandle method(Class<?> owner, String name, Class<?> param) {
+        return find(owner, name, param, 1, false);
+    }
+
+    MethodHandle declared(Class<?> owner, String name, int arity) {
+        return find(owner, name, null, arity, true);
+    }
+
+    private MethodHandle find(Class<?> owner, String name, Class<?> param, int arity, boolean declared) {
+        Map<Key, MethodHandle> methods = byClass.get(owner);
+        Key key = new Key(name, param, arity, declared);
+        MethodHandle handle = methods.get(key);
+        if (handle != null) {
+            hits.increment();
+            return handle == MISSING ? null : handle;
+        }
+        misses.increment();
+        handle = resolve(owner, name, param, arity, declared);
+        methods.put(key, handle == null ? MISSING : handle);
+        return handle;
+    }
+
+    private static final class Key {
+        private final String name;
+        private final Class<?> param;
+        private final int arity;
+        private final boolean declared;
+
+        private Key(String name, Class<?> param, int arity, boolean declared) {
+            this.name = name;
+            this.param = param;
+            this.arity = arity;
+            this.declared = declared;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return arity == other.arity && declared == other.declared && param == other.param && name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return ((name.hashCode() * 31 + Objects.hashCode(param)) * 31 + arity) * 2 + (declared ? 1 : 0);
+        }
+    }
+
+    private static MethodHandle resolve(Class<?> owner, String name, Class<?> param, int arity, boolean declared) {
+        try {
+            Method method = null;
+            if (!declared) {
+                method = param == null ? owner.getMethod(name) : owner.getMethod(name, param);
+            } else {
+                for (Method m : owner.getDeclaredMethods()) {
+                    if (m.getName().equals(name) && m.getParameterCount() == arity) {
+                        m.setAccessible(true);
+                        method = m;
+                        break;
+                    }
+                }
+            }
+            if (method == null) {
+                return null;
+            }
+            return MethodHandles.lookup().unreflect(method).asType(MethodType.genericMethodType(arity + 1));
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+}
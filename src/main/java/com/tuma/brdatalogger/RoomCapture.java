@@ -0,0 +1,94 @@
+package com.tuma.brdatalogger;
+
+import java.util.Comparator;
+
+import static com.tuma.brdatalogger.BRDataLoggerClient.LONG_ARRAYS;
+
+// Everything one room's analysis needs, copied on the client thread.
+final class RoomCapture {
+    static final Comparator<RoomCapture> BY_ROOM_ID = Comparator.comparingLong(c -> c.roomId);
+    // BedrockRooms has no blast-safe set yet and it was not computed during the capture.
+    static final int BLAST_SAFE_DEFERRED = -2;
+
+    String profile;
+    long roomId;
+    double centerX;
+    double centerY;
+    double centerZ;
+    int standableCount;
+    int placeableCount;
+    boolean sealed;
+    int exitComponents;
+    int maxExitComponentSize;
+    int privateBestScore;
+    int idealPrivateCount;
+    int blastSafeCount;
+    int minBlast;
+    boolean forceDump;
+
+    long[] cells;
+    int cellCount;
+    long[] exits;
+    int exitCount;
+    long[] blastSafe;
+    int blastSafeLength;
+    int minX;
+    int maxX;
+    int minY;
+    int maxY;
+    int minZ;
+    int maxZ;
+
+    int yMax;
+    int pad;
+    ChunkLayer[] layers;
+
+    int width;
+    int depth;
+    int loaded;
+    int skipped;
+    int bedrock;
+    int air;
+    int other;
+    long contentKey;
+    long blastSafeHash;
+    // Set when the hashes came from CAPTURE_CACHE and no cells were copied.
+    boolean hashed;
+    CaptureCache.Entry cacheEntry;
+    boolean measured;
+
+    RoomCapture() {
+    }
+
+    // Just what countYMax reads, for the benchmarks.
+    RoomCapture(int minX, int maxX, int minZ, int maxZ, int pad, ChunkLayer[] layers) {
+        this.minX = minX;
+        this.maxX = maxX;
+        this.minZ = minZ;
+        this.maxZ = maxZ;
+        this.pad = pad;
+        this.layers = layers;
+    }
+
+    int loaded() {
+        return loaded;
+    }
+
+    int bedrock() {
+        return bedrock;
+    }
+
+    int air() {
+        return air;
+    }
+
+    void release() {
+        LONG_ARRAYS.release(cells);
+        LONG_ARRAYS.release(exits);
+        LONG_ARRAYS.release(blastSafe);
+        cells = null;
+        exits = null;
+        blastSafe = null;
+        layers = null;
+    }
+}
@@ -0,0 +1,167 @@
+package com.tuma.brdatalogger;
+
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.util.math.BlockPos;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+
+import static com.tuma.brdatalogger.BRDataLoggerClient.LOGGER;
+
+final class RoomGeometry {
+    static final long EXIT_SEED = 0x9E3779B97F4A7C15L;
+    static final long BLAST_SAFE_SEED = 0xC2B2AE3D27D4EB4FL;
+    private static final MethodHandle SET_KEYS;
+
+    static {
+        MethodHandle keys = null;
+        try {
+            Field keyField = LongOpenHashSet.class.getDeclaredField("key");
+            keyField.setAccessible(true);
+            keys = MethodHandles.lookup().unreflectGetter(keyField);
+        } catch (Throwable t) {
+            LOGGER.debug("LongOpenHashSet internals not accessible, using iterators.", t);
+        }
+        SET_KEYS = keys;
+    }
+
+    int minX;
+    int maxX;
+    int minY;
+    int maxY;
+    int minZ;
+    int maxZ;
+
+    int minX() {
+        return minX;
+    }
+
+    int maxX() {
+        return maxX;
+    }
+
+    int minZ() {
+        return minZ;
+    }
+
+    int maxZ() {
+        return maxZ;
+    }
+
+    // Copies the cells densely into out, then takes the bounds from the dense copy.
+    int copy(LongCollection cells, long[] out) {
+        reset();
+        int n = copyKeys(cells, out);
+        for (int i = 0; i < n; i++) {
+            accept(out[i]);
+        }
+        return n;
+    }
+
+    private void reset() {
+        minX = Integer.MAX_VALUE;
+        minY = Integer.MAX_VALUE;
+        minZ = Integer.MAX_VALUE;
+        maxX = Integer.MIN_VALUE;
+        maxY = Integer.MIN_VALUE;
+        maxZ = Integer.MIN_VALUE;
+    }
+
+    private void accept(long l) {
+        int x = BlockPos.unpackLongX(l);
+        int y = BlockPos.unpackLongY(l);
+        int z = BlockPos.unpackLongZ(l);
+        if (x < minX) {
+            minX = x;
+        }
+        if (y < minY) {
+            minY = y;
+        }
+        if (z < minZ) {
+            minZ = z;
+        }
+        if (x > maxX) {
+            maxX = x;
+        }
+        if (y > maxY) {
+            maxY = y;
+        }
+        if (z > maxZ) {
+            maxZ = z;
+        }
+    }
+
+    static int copyKeys(LongCollection cells, long[] out) {
+        int n = 0;
+        long[] keys = tableKeys(cells);
+        if (keys != null) {
+            // Open-addressing table: 0 marks a free slot, the 0 key itself is answered by contains().
+            for (long l : keys) {
+                if (l != 0L) {
+                    out[n++] = l;
+                }
+            }
+            if (cells.contains(0L)) {
+                out[n++] = 0L;
+            }
+            return n;
+        }
+        LongIterator it = cells.iterator();
+        while (it.hasNext()) {
+            out[n++] = it.nextLong();
+        }
+        return n;
+    }
+
+    // Order-independent: sum of mixed positions.
+    static long hash(long[] cells, int count, long seed) {
+        long h = 0L;
+        for (int i = 0; i < count; i++) {
+            h += mix(cells[i] ^ seed);
+        }
+        return h;
+    }
+
+    // Same value as hash() over a copy of the cells, without making the copy.
+    static long hashKeys(LongCollection cells, long seed) {
+        long h = 0L;
+        long[] keys = tableKeys(cells);
+        if (keys != null) {
+            for (long l : keys) {
+                if (l != 0L) {
+                    h += mix(l ^ seed);
+                }
+            }
+            return cells.contains(0L) ? h + mix(seed) : h;
+        }
+        LongIterator it = cells.iterator();
+        while (it.hasNext()) {
+            h += mix(it.nextLong() ^ seed);
+        }
+        return h;
+    }
+
+    private static long[] tableKeys(LongCollection cells) {
+        if (SET_KEYS == null || cells.getClass() != LongOpenHashSet.class) {
+            return null;
+        }
+        try {
+            return (long[]) SET_KEYS.invokeExact((LongOpenHashSet) cells);
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    static long combine(long h, long value) {
+        return mix(h * 31L + value);
+    }
+
+    static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+}
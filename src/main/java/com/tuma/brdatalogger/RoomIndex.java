@@ -0,0 +1,498 @@
+package com.tuma.brdatalogger;
+
+import com.tuma.brdatalogger.BRDataLoggerClient.RoomSnapshot;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.LongConsumer;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.tuma.brdatalogger.BRDataLoggerClient.GSON;
+import static com.tuma.brdatalogger.BRDataLoggerClient.LOGGER;
+import static com.tuma.brdatalogger.BRDataLoggerClient.replaceFile;
+
+// rooms.idx of one profile: the latest bounds of every logged room, keyed like KnownRooms.
+// Writer thread only.
+final class RoomIndex {
+    private static final String FILE_NAME = "rooms.idx";
+    private static final int MAGIC = 0x42524958;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 80;
+    private static final int CELL_SHIFT = 7;
+    private static final int MAX_FOOTPRINT_CELLS = 64;
+    static final int MAX_RADIUS = 4096;
+    private static final long COMPACT_SLACK = 4096L;
+    private static final Pattern FILTER_TERM = Pattern.compile("(id|x|y|z|cells|exits|ideal|blast)(<=|>=|=|<|>)(-?\\d+(?:\\.\\d+)?)");
+
+    private final Path file;
+    private final Long2ObjectOpenHashMap<Entry> rooms = new Long2ObjectOpenHashMap<>();
+    // roomId to key for the rows appended this session; ids from earlier sessions mean nothing.
+    private final Long2LongOpenHashMap sessionKeys = new Long2LongOpenHashMap();
+    private final Long2ObjectOpenHashMap<LongArrayList> grid = new Long2ObjectOpenHashMap<>();
+    private final LongOpenHashSet wide = new LongOpenHashSet();
+    private ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 256);
+    private FileChannel channel;
+    private long records;
+    // Entries dropped for a moved room whose records are still in the file; close compacts them away.
+    private long dropped;
+
+    static final class Entry {
+        private long key;
+        private long timestampNanos;
+        long roomId;
+        double centerX;
+        double centerY;
+        double centerZ;
+        private int minX;
+        private int maxX;
+        private int minY;
+        private int maxY;
+        private int minZ;
+        private int maxZ;
+        int roomCells;
+        int exitCells;
+        int idealPrivateCount;
+        int blastSafeCells;
+
+        // horizontal distance from (x, z) to the nearest block of the bounds
+        double distanceTo(double x, double z) {
+            double dx = Math.max(0.0, Math.max(minX - x, x - (maxX + 1)));
+            double dz = Math.max(0.0, Math.max(minZ - z, z - (maxZ + 1)));
+            return Math.sqrt(dx * dx + dz * dz);
+        }
+    }
+
+    private RoomIndex(Path file) {
+        this.file = file;
+    }
+
+    // A missing or unreadable index is rebuilt once from the binary log, or from the text logs
+    // when the binary log misses some of their rows.
+    static RoomIndex open(Path dir) throws IOException {
+        RoomIndex index = new RoomIndex(dir.resolve(FILE_NAME));
+        if (Files.exists(index.file)) {
+            try {
+                index.load();
+                return index;
+            } catch (IOException e) {
+                LOGGER.warn("Rebuilding room index {}", index.file, e);
+                index.clear();
+            }
+        }
+        Path log = dir.resolve(BinarySnapshotLog.FILE_NAME);
+        List<Path> text = SegmentManifest.load(dir).files(".jsonl");
+        if (Files.exists(log) && (text.isEmpty() || BinarySnapshotLog.isComplete(log))) {
+            BinarySnapshotLog.read(log, "", snapshot -> index.put(toEntry(snapshot)));
+        } else {
+            for (Path file : text) {
+                index.readText(file);
+            }
+        }
+        index.rewrite();
+        return index;
+    }
+
+    private void readText(Path file) throws IOException {
+        try (BufferedReader in = SegmentManifest.newReader(file)) {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    RoomSnapshot snapshot = GSON.fromJson(line, RoomSnapshot.class);
+                    Entry entry = toEntry(snapshot);
+                    Instant at = Instant.parse(snapshot.timestamp);
+                    entry.timestampNanos = at.getEpochSecond() * 1_000_000_000L + at.getNano();
+                    put(entry);
+                } catch (RuntimeException e) {
+                    // a torn last line
+                }
+            }
+        }
+    }
+
+    private void load() throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && in.read(header) >= 0) {
+            }
+            if (header.position() < HEADER_SIZE || header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                    || header.getInt(8) != RECORD_SIZE) {
+                throw new IOException("Unsupported room index format in " + file);
+            }
+            // a torn record at the end is dropped and overwritten by the next append
+            long count = (in.size() - HEADER_SIZE) / RECORD_SIZE;
+            ByteBuffer chunk = ByteBuffer.allocate(RECORD_SIZE * 4096);
+            long read = 0L;
+            while (read < count) {
+                chunk.clear();
+                chunk.limit((int) Math.min(chunk.capacity(), (count - read) * RECORD_SIZE));
+                while (chunk.hasRemaining()) {
+                    if (in.read(chunk) < 0) {
+                        throw new IOException("Truncated room index " + file);
+                    }
+                }
+                chunk.flip();
+                while (chunk.remaining() >= RECORD_SIZE) {
+                    put(decode(chunk));
+                    read++;
+                }
+            }
+            records = count;
+        }
+    }
+
+    void append(List<RoomSnapshot> snapshots) throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (channel.size() < HEADER_SIZE) {
+                writeFully(channel, header(), 0L);
+                records = 0L;
+            }
+        }
+        int bytes = snapshots.size() * RECORD_SIZE;
+        if (buffer.capacity() < bytes) {
+            buffer = ByteBuffer.allocate(Integer.highestOneBit(bytes - 1) << 1);
+        }
+        buffer.clear();
+        for (RoomSnapshot snapshot : snapshots) {
+            Entry entry = toEntry(snapshot);
+            encode(entry, buffer);
+            if (sessionKeys.containsKey(entry.roomId)) {
+                long previous = sessionKeys.get(entry.roomId);
+                if (previous != entry.key && remove(previous)) {
+                    dropped++;
+                }
+            }
+            sessionKeys.put(entry.roomId, entry.key);
+            put(entry);
+        }
+        buffer.flip();
+        writeFully(channel, buffer, HEADER_SIZE + records * RECORD_SIZE);
+        records += snapshots.size();
+        if (records > 2L * rooms.size() + COMPACT_SLACK) {
+            rewrite();
+        }
+    }
+
+    // Writes only the live entries to a temp file and swaps it in.
+    private void rewrite() throws IOException {
+        close(false);
+        Path tempFile = file.resolveSibling(FILE_NAME + ".tmp");
+        try (FileChannel out = FileChannel.open(tempFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(header());
+            ByteBuffer chunk = ByteBuffer.allocate(RECORD_SIZE * 4096);
+            for (Entry entry : rooms.values()) {
+                if (chunk.remaining() < RECORD_SIZE) {
+                    chunk.flip();
+                    while (chunk.hasRemaining()) {
+                        out.write(chunk);
+                    }
+                    chunk.clear();
+                }
+                encode(entry, chunk);
+            }
+            chunk.flip();
+            while (chunk.hasRemaining()) {
+                out.write(chunk);
+            }
+        }
+        replaceFile(tempFile, file);
+        records = rooms.size();
+        dropped = 0L;
+    }
+
+    private static ByteBuffer header() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(0);
+        header.flip();
+        return header;
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer data, long position) throws IOException {
+        while (data.hasRemaining()) {
+            position += out.write(data, position);
+        }
+    }
+
+    private void put(Entry entry) {
+        Entry previous = rooms.put(entry.key, entry);
+        if (previous != null) {
+            if (previous.minX == entry.minX && previous.maxX == entry.maxX
+                    && previous.minZ == entry.minZ && previous.maxZ == entry.maxZ) {
+                return;
+            }
+            unindex(previous);
+        }
+        if (!forEachCell(entry, cell -> grid.computeIfAbsent(cell, k -> new LongArrayList(4)).add(entry.key))) {
+            wide.add(entry.key);
+        }
+    }
+
+    int size() {
+        return rooms.size();
+    }
+
+    private boolean remove(long key) {
+        Entry entry = rooms.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        unindex(entry);
+        return true;
+    }
+
+    private void unindex(Entry entry) {
+        forEachCell(entry, cell -> {
+            LongArrayList keys = grid.get(cell);
+            if (keys != null) {
+                keys.rem(entry.key);
+                if (keys.isEmpty()) {
+                    grid.remove(cell);
+                }
+            }
+        });
+        wide.remove(entry.key);
+    }
+
+    // Rooms spanning more than MAX_FOOTPRINT_CELLS columns are not gridded (returns false);
+    // queries check them directly.
+    private static boolean forEachCell(Entry entry, LongConsumer action) {
+        int cx0 = entry.minX >> CELL_SHIFT;
+        int cx1 = entry.maxX >> CELL_SHIFT;
+        int cz0 = entry.minZ >> CELL_SHIFT;
+        int cz1 = entry.maxZ >> CELL_SHIFT;
+        if (cx1 < cx0 || cz1 < cz0 || (long) (cx1 - cx0 + 1) * (cz1 - cz0 + 1) > MAX_FOOTPRINT_CELLS) {
+            return false;
+        }
+        for (int cx = cx0; cx <= cx1; cx++) {
+            for (int cz = cz0; cz <= cz1; cz++) {
+                action.accept(cellKey(cx, cz));
+            }
+        }
+        return true;
+    }
+
+    private static long cellKey(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+    }
+
+    List<Entry> near(double x, double z, int radius) {
+        LongOpenHashSet seen = new LongOpenHashSet();
+        List<Entry> out = new ArrayList<>();
+        int cx0 = (int) Math.floor(x - radius) >> CELL_SHIFT;
+        int cx1 = (int) Math.floor(x + radius) >> CELL_SHIFT;
+        int cz0 = (int) Math.floor(z - radius) >> CELL_SHIFT;
+        int cz1 = (int) Math.floor(z + radius) >> CELL_SHIFT;
+        for (int cx = cx0; cx <= cx1; cx++) {
+            for (int cz = cz0; cz <= cz1; cz++) {
+                LongArrayList keys = grid.get(cellKey(cx, cz));
+                if (keys == null) {
+                    continue;
+                }
+                for (int i = 0; i < keys.size(); i++) {
+                    long key = keys.getLong(i);
+                    Entry entry = rooms.get(key);
+                    if (seen.add(key) && entry.distanceTo(x, z) <= radius) {
+                        out.add(entry);
+                    }
+                }
+            }
+        }
+        LongIterator it = wide.iterator();
+        while (it.hasNext()) {
+            Entry entry = rooms.get(it.nextLong());
+            if (entry.distanceTo(x, z) <= radius) {
+                out.add(entry);
+            }
+        }
+        return out;
+    }
+
+    List<Entry> find(Predicate<Entry> filter) {
+        List<Entry> out = new ArrayList<>();
+        for (Entry entry : rooms.values()) {
+            if (filter.test(entry)) {
+                out.add(entry);
+            }
+        }
+        return out;
+    }
+
+    // Space separated terms that all have to match, e.g. "ideal>=20 blast>0 y<-40". Field and
+    // operator are resolved here so testing an entry is a plain field read and compare.
+    static Predicate<Entry> parseFilter(String text) {
+        Predicate<Entry> filter = entry -> true;
+        for (String term : text.trim().toLowerCase(Locale.ROOT).split("\\s+")) {
+            Matcher m = FILTER_TERM.matcher(term);
+            if (!m.matches()) {
+                throw new IllegalArgumentException("Bad filter term: " + term);
+            }
+            ToDoubleFunction<Entry> field = field(m.group(1));
+            double value = Double.parseDouble(m.group(3));
+            Predicate<Entry> test;
+            switch (m.group(2)) {
+                case "<":
+                    test = entry -> field.applyAsDouble(entry) < value;
+                    break;
+                case "<=":
+                    test = entry -> field.applyAsDouble(entry) <= value;
+                    break;
+                case ">":
+                    test = entry -> field.applyAsDouble(entry) > value;
+                    break;
+                case ">=":
+                    test = entry -> field.applyAsDouble(entry) >= value;
+                    break;
+                default:
+                    test = entry -> field.applyAsDouble(entry) == value;
+                    break;
+            }
+            filter = filter.and(test);
+        }
+        return filter;
+    }
+
+    private static ToDoubleFunction<Entry> field(String name) {
+        switch (name) {
+            case "id":
+                return entry -> entry.roomId;
+            case "x":
+                return entry -> entry.centerX;
+            case "y":
+                return entry -> entry.centerY;
+            case "z":
+                return entry -> entry.centerZ;
+            case "cells":
+                return entry -> entry.roomCells;
+            case "exits":
+                return entry -> entry.exitCells;
+            case "ideal":
+                return entry -> entry.idealPrivateCount;
+            default:
+                return entry -> entry.blastSafeCells;
+        }
+    }
+
+    private static Entry toEntry(RoomSnapshot s) {
+        Entry entry = new Entry();
+        entry.timestampNanos = s.timestampNanos;
+        entry.roomId = s.roomId;
+        entry.centerX = s.centerX;
+        entry.centerY = s.centerY;
+        entry.centerZ = s.centerZ;
+        entry.minX = s.minX;
+        entry.maxX = s.maxX;
+        entry.minY = s.minY;
+        entry.maxY = s.maxY;
+        entry.minZ = s.minZ;
+        entry.maxZ = s.maxZ;
+        entry.roomCells = s.roomCells;
+        entry.exitCells = s.exitCells;
+        entry.idealPrivateCount = s.idealPrivateCount;
+        entry.blastSafeCells = s.blastSafeCells;
+        entry.key = KnownRooms.key(entry.minX, entry.maxX, entry.minY, entry.maxY, entry.minZ, entry.maxZ);
+        return entry;
+    }
+
+    private static void encode(Entry e, ByteBuffer out) {
+        out.putLong(e.timestampNanos);
+        out.putLong(e.roomId);
+        out.putDouble(e.centerX);
+        out.putDouble(e.centerY);
+        out.putDouble(e.centerZ);
+        out.putInt(e.minX);
+        out.putInt(e.maxX);
+        out.putInt(e.minY);
+        out.putInt(e.maxY);
+        out.putInt(e.minZ);
+        out.putInt(e.maxZ);
+        out.putInt(e.roomCells);
+        out.putInt(e.exitCells);
+        out.putInt(e.idealPrivateCount);
+        out.putInt(e.blastSafeCells);
+    }
+
+    private static Entry decode(ByteBuffer in) {
+        Entry e = new Entry();
+        e.timestampNanos = in.getLong();
+        e.roomId = in.getLong();
+        e.centerX = in.getDouble();
+        e.centerY = in.getDouble();
+        e.centerZ = in.getDouble();
+        e.minX = in.getInt();
+        e.maxX = in.getInt();
+        e.minY = in.getInt();
+        e.maxY = in.getInt();
+        e.minZ = in.getInt();
+        e.maxZ = in.getInt();
+        e.roomCells = in.getInt();
+        e.exitCells = in.getInt();
+        e.idealPrivateCount = in.getInt();
+        e.blastSafeCells = in.getInt();
+        e.key = KnownRooms.key(e.minX, e.maxX, e.minY, e.maxY, e.minZ, e.maxZ);
+        return e;
+    }
+
+    private void clear() {
+        rooms.clear();
+        sessionKeys.clear();
+        grid.clear();
+        wide.clear();
+        records = 0L;
+        dropped = 0L;
+    }
+
+    void close(boolean force) {
+        if (dropped > 0L) {
+            dropped = 0L;
+            try {
+                rewrite();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to compact room index {}", file, e);
+            }
+        }
+        if (channel == null) {
+            return;
+        }
+        try {
+            if (force) {
+                channel.force(false);
+            }
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.debug("Failed to close {}", file, e);
+        }
+        channel = null;
+    }
+
+    // After a failed append the file misses rows; deleting it makes the next open rebuild it.
+    void discard() {
+        dropped = 0L;
+        close(false);
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to delete {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.tuma.brdatalogger;
+
+import com.tuma.brdatalogger.BRDataLoggerClient.RoomWriteState;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+import static com.tuma.brdatalogger.BRDataLoggerClient.LOGGER;
+import static com.tuma.brdatalogger.BRDataLoggerClient.ROOM_STATES;
+import static com.tuma.brdatalogger.BRDataLoggerClient.applyWrittenRows;
+import static com.tuma.brdatalogger.BRDataLoggerClient.getProfileDir;
+import static com.tuma.brdatalogger.BRDataLoggerClient.replaceFile;
+
+// room_states.bin of one profile: the last write of every room, keyed like KnownRooms.
+// Analysis thread only.
+final class RoomStateCheckpoint {
+    private static final String FILE_NAME = "room_states.bin";
+    private static final int MAGIC = 0x42525354;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+    private static final int SLOT_SIZE = 32;
+    private static final int MIN_CAPACITY = 1024;
+    private static final long SAVE_INTERVAL_MS = 5L * 60L * 1000L;
+    private static final long MAX_AGE_MS = 7L * 24L * 60L * 60L * 1000L;
+
+    private final ByteBuffer slot = ByteBuffer.allocate(SLOT_SIZE);
+    private String profile;
+    private FileChannel table;
+    private int mask;
+    private long lastSaveMs;
+    boolean dirty;
+    // Highest row sequence number the writer has finished with.
+    long writtenSeq;
+    volatile long restored;
+
+    // Switching profiles saves the old one's states and then drops them, so they never end
+    // up in the new profile's checkpoint.
+    void open(String profile) {
+        if (Objects.equals(this.profile, profile)) {
+            return;
+        }
+        save();
+        close();
+        if (this.profile != null) {
+            ROOM_STATES.clear();
+        }
+        this.profile = profile;
+        lastSaveMs = System.currentTimeMillis();
+        if (profile == null || profile.isBlank()) {
+            return;
+        }
+        Path file = getProfileDir(profile).resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return;
+        }
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0L);
+            int capacity = header.getInt(12);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(8) != SLOT_SIZE
+                    || Integer.bitCount(capacity) != 1 || size != HEADER_SIZE + (long) capacity * SLOT_SIZE) {
+                throw new IOException("Unsupported room state checkpoint " + file);
+            }
+            table = channel;
+            mask = capacity - 1;
+        } catch (IOException e) {
+            LOGGER.warn("Ignoring room state checkpoint {}", file, e);
+            ProfileSink.closeQuietly(channel);
+        }
+    }
+
+    RoomWriteState get(long key) {
+        if (table == null) {
+            return null;
+        }
+        int index = (int) RoomGeometry.mix(key) & mask;
+        try {
+            for (int probe = 0; probe <= mask; probe++) {
+                readFully(table, slot, HEADER_SIZE + (long) index * SLOT_SIZE);
+                if (slot.getInt(28) == 0) {
+                    return null;
+                }
+                if (slot.getLong(0) == key) {
+                    RoomWriteState state = new RoomWriteState();
+                    state.key = key;
+                    state.lastSignature = slot.getLong(8);
+                    state.lastWriteMs = slot.getLong(16);
+                    state.lastLoaded = slot.getInt(24);
+                    restored++;
+                    return state;
+                }
+                index = (index + 1) & mask;
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Dropping unreadable room state checkpoint of {}", profile, e);
+            close();
+        }
+        return null;
+    }
+
+    void maybeSave(long now) {
+        if (dirty && now - lastSaveMs >= SAVE_INTERVAL_MS) {
+            save();
+        }
+    }
+
+    // Rewrites the table via a temp file. States whose row the writer has not finished yet
+    // keep their old entry until the next save.
+    void save() {
+        applyWrittenRows();
+        if (!dirty || profile == null || profile.isBlank()) {
+            return;
+        }
+        dirty = false;
+        long now = System.currentTimeMillis();
+        lastSaveMs = now;
+        Path file = getProfileDir(profile).resolve(FILE_NAME);
+        Path tempFile = file.resolveSibling(FILE_NAME + ".tmp");
+        try {
+            Long2ObjectOpenHashMap<RoomWriteState> merged = new Long2ObjectOpenHashMap<>();
+            if (table != null) {
+                ByteBuffer old = ByteBuffer.allocate((mask + 1) * SLOT_SIZE);
+                readFully(table, old, HEADER_SIZE);
+                for (int base = 0; base < old.capacity(); base += SLOT_SIZE) {
+                    if (old.getInt(base + 28) != 0 && now - old.getLong(base + 16) <= MAX_AGE_MS) {
+                        RoomWriteState state = new RoomWriteState();
+                        state.lastSignature = old.getLong(base + 8);
+                        state.lastWriteMs = old.getLong(base + 16);
+                        state.lastLoaded = old.getInt(base + 24);
+                        merged.put(old.getLong(base), state);
+                    }
+                }
+            }
+            for (RoomWriteState state : ROOM_STATES.states.values()) {
+                if (state.seq > writtenSeq) {
+                    dirty = true;
+                } else {
+                    merged.put(state.key, state);
+                }
+            }
+
+            int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, merged.size() * 2 - 1)) << 1);
+            int newMask = capacity - 1;
+            ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + capacity * SLOT_SIZE);
+            out.putInt(0, MAGIC);
+            out.putInt(4, VERSION);
+            out.putInt(8, SLOT_SIZE);
+            out.putInt(12, capacity);
+            out.putInt(16, merged.size());
+            out.putLong(24, now);
+            for (Long2ObjectMap.Entry<RoomWriteState> entry : merged.long2ObjectEntrySet()) {
+                long key = entry.getLongKey();
+                int index = (int) RoomGeometry.mix(key) & newMask;
+                while (out.getInt(HEADER_SIZE + index * SLOT_SIZE + 28) != 0) {
+                    index = (index + 1) & newMask;
+                }
+                int base = HEADER_SIZE + index * SLOT_SIZE;
+                RoomWriteState state = entry.getValue();
+                out.putLong(base, key);
+                out.putLong(base + 8, state.lastSignature);
+                out.putLong(base + 16, state.lastWriteMs);
+                out.putInt(base + 24, state.lastLoaded);
+                out.putInt(base + 28, 1);
+            }
+            Files.createDirectories(file.getParent());
+            try (FileChannel channel = FileChannel.open(tempFile,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+                channel.force(false);
+            }
+            // the old file has to be closed before the rename on platforms that lock open files
+            String current = profile;
+            close();
+            replaceFile(tempFile, file);
+            profile = null;
+            open(current);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write room state checkpoint {}", file, e);
+            dirty = true;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Truncated room state checkpoint");
+            }
+        }
+    }
+
+    private void close() {
+        ProfileSink.closeQuietly(table);
+        table = null;
+        mask = 0;
+    }
+}
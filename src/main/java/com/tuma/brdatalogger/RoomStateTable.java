@@ -0,0 +1,59 @@
+package com.tuma.brdatalogger;
+
+import com.tuma.brdatalogger.BRDataLoggerClient.RoomWriteState;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+
+import static com.tuma.brdatalogger.BRDataLoggerClient.config;
+
+// Access-ordered: the head is always the least recently seen room.
+final class RoomStateTable {
+    final Long2ObjectLinkedOpenHashMap<RoomWriteState> states = new Long2ObjectLinkedOpenHashMap<>();
+    // Written by the analysis thread only, published for /brlog status.
+    volatile int size;
+    volatile long evictedBySize;
+    volatile long evictedByAge;
+
+    RoomWriteState get(long roomId, long now) {
+        RoomWriteState state = states.getAndMoveToLast(roomId);
+        if (state != null) {
+            state.lastSeenMs = now;
+        }
+        return state;
+    }
+
+    void put(long roomId, RoomWriteState state) {
+        states.putAndMoveToLast(roomId, state);
+        int max = Math.max(1, config.roomStateMaxEntries);
+        while (states.size() > max) {
+            states.removeFirst();
+            evictedBySize++;
+        }
+        size = states.size();
+    }
+
+    void evictExpired(long now) {
+        long ttl = config.roomStateTtlMs;
+        if (ttl <= 0L) {
+            return;
+        }
+        while (!states.isEmpty() && now - states.get(states.firstLongKey()).lastSeenMs > ttl) {
+            states.removeFirst();
+            evictedByAge++;
+        }
+        size = states.size();
+    }
+
+    void remove(long roomId) {
+        states.remove(roomId);
+        size = states.size();
+    }
+
+    void clear() {
+        states.clear();
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,83 @@
+package com.tuma.brdatalogger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.GZIPOutputStream;
+
+import static com.tuma.brdatalogger.BRDataLoggerClient.LOGGER;
+import static com.tuma.brdatalogger.BRDataLoggerClient.replaceFile;
+
+// Gzips closed segments on one low-priority daemon thread.
+final class SegmentCompressor {
+    private ExecutorService executor;
+
+    private synchronized ExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "BRBaseLogger-Compress");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    void submit(SegmentManifest manifest, SegmentManifest.Segment segment) {
+        try {
+            executor().execute(() -> compress(manifest, segment));
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Segment compressor stopped, {} left uncompressed.", segment.name, e);
+        }
+    }
+
+    private static void compress(SegmentManifest manifest, SegmentManifest.Segment segment) {
+        LoggerEvents.SegmentCompressEvent event = new LoggerEvents.SegmentCompressEvent();
+        event.begin();
+        Path dir = manifest.segmentDir();
+        for (String ext : SegmentManifest.EXTENSIONS) {
+            Path plain = dir.resolve(segment.name + ext);
+            if (!Files.exists(plain)) {
+                continue;
+            }
+            Path gz = dir.resolve(segment.name + ext + ".gz");
+            Path tempFile = dir.resolve(segment.name + ext + ".gz.tmp");
+            try {
+                try (InputStream in = Files.newInputStream(plain);
+                     OutputStream out = new GZIPOutputStream(Files.newOutputStream(tempFile), 1 << 16)) {
+                    in.transferTo(out);
+                }
+                long bytesIn = Files.size(plain);
+                replaceFile(tempFile, gz);
+                Files.delete(plain);
+                event.bytesIn += bytesIn;
+                event.bytesOut += Files.size(gz);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to compress segment {}", plain, e);
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException ignored) {
+                    // replaced by the next attempt
+                }
+                return;
+            }
+        }
+        manifest.markCompressed(segment);
+        if (event.shouldCommit()) {
+            event.segment = segment.name;
+            event.commit();
+        }
+    }
+
+    synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.tuma.brdatalogger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+
+import static com.tuma.brdatalogger.BRDataLoggerClient.FILE_TS_FORMAT;
+import static com.tuma.brdatalogger.BRDataLoggerClient.GSON;
+import static com.tuma.brdatalogger.BRDataLoggerClient.LOGGER;
+import static com.tuma.brdatalogger.BRDataLoggerClient.replaceFile;
+
+// segments/manifest.json of one profile. One instance per profile directory.
+final class SegmentManifest {
+    private static final String DIR_NAME = "segments";
+    private static final String FILE_NAME = "manifest.json";
+    static final String[] EXTENSIONS = {".jsonl", ".csv", ".txt"};
+    private static final Map<Path, SegmentManifest> LOADED = new ConcurrentHashMap<>();
+
+    long activeStartedMs;
+    private List<Segment> segments = new ArrayList<>();
+    private transient Path profileDir;
+
+    static final class Segment {
+        String name;
+        private long startedMs;
+        private long closedMs;
+        private boolean compressed;
+    }
+
+    static SegmentManifest load(Path profileDir) {
+        return LOADED.computeIfAbsent(profileDir, SegmentManifest::read);
+    }
+
+    private static SegmentManifest read(Path profileDir) {
+        Path file = profileDir.resolve(DIR_NAME).resolve(FILE_NAME);
+        SegmentManifest manifest = null;
+        if (Files.exists(file)) {
+            try {
+                manifest = GSON.fromJson(Files.readString(file), SegmentManifest.class);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Failed to read segment manifest {}", file, e);
+            }
+        }
+        if (manifest == null) {
+            manifest = new SegmentManifest();
+            manifest.activeStartedMs = createdAt(profileDir.resolve("bases.jsonl"));
+        }
+        if (manifest.segments == null) {
+            manifest.segments = new ArrayList<>();
+        }
+        manifest.profileDir = profileDir;
+        return manifest;
+    }
+
+    // Files written before segments existed count from their creation time, so a
+    // long-running legacy log gets rolled on its first write of a new day.
+    private static long createdAt(Path file) {
+        try {
+            if (Files.exists(file)) {
+                return Files.readAttributes(file, BasicFileAttributes.class).creationTime().toMillis();
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Failed to read attributes of {}", file, e);
+        }
+        return System.currentTimeMillis();
+    }
+
+    static boolean sameDay(long a, long b) {
+        ZoneId zone = ZoneId.systemDefault();
+        return Instant.ofEpochMilli(a).atZone(zone).toLocalDate().equals(Instant.ofEpochMilli(b).atZone(zone).toLocalDate());
+    }
+
+    Path segmentDir() {
+        return profileDir.resolve(DIR_NAME);
+    }
+
+    synchronized long activeStartedMs() {
+        return activeStartedMs;
+    }
+
+    // Picks the name the active files are moved to; nothing is recorded until commit, so
+    // the manifest never lists a segment whose files did not all arrive.
+    synchronized Segment prepare(long now) throws IOException {
+        Path dir = segmentDir();
+        Files.createDirectories(dir);
+        String base = "bases-" + FILE_TS_FORMAT.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(activeStartedMs), ZoneId.systemDefault()));
+        String name = base;
+        for (int n = 1; isTaken(dir, name); n++) {
+            name = base + "-" + n;
+        }
+        Segment segment = new Segment();
+        segment.name = name;
+        segment.startedMs = activeStartedMs;
+        segment.closedMs = now;
+        return segment;
+    }
+
+    synchronized void commit(Segment segment) throws IOException {
+        long previous = activeStartedMs;
+        segments.add(segment);
+        activeStartedMs = segment.closedMs;
+        try {
+            save();
+        } catch (IOException e) {
+            segments.remove(segment);
+            activeStartedMs = previous;
+            throw e;
+        }
+    }
+
+    private boolean isTaken(Path dir, String name) {
+        for (Segment segment : segments) {
+            if (segment.name.equals(name)) {
+                return true;
+            }
+        }
+        return Files.exists(dir.resolve(name + ".jsonl")) || Files.exists(dir.resolve(name + ".jsonl.gz"));
+    }
+
+    synchronized void markCompressed(Segment segment) {
+        segment.compressed = true;
+        try {
+            save();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to update segment manifest in {}", segmentDir(), e);
+        }
+    }
+
+    synchronized List<Segment> uncompressed() {
+        List<Segment> out = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (!segment.compressed) {
+                out.add(segment);
+            }
+        }
+        return out;
+    }
+
+    // Every file holding rows of one kind, oldest first: closed segments, whichever of the
+    // gzipped or plain copy is present, then the active file.
+    synchronized List<Path> files(String ext) {
+        List<Path> out = new ArrayList<>();
+        Path dir = segmentDir();
+        for (Segment segment : segments) {
+            Path gz = dir.resolve(segment.name + ext + ".gz");
+            Path plain = dir.resolve(segment.name + ext);
+            if (Files.exists(gz)) {
+                out.add(gz);
+            } else if (Files.exists(plain)) {
+                out.add(plain);
+            }
+        }
+        Path active = profileDir.resolve("bases" + ext);
+        if (Files.exists(active)) {
+            out.add(active);
+        }
+        return out;
+    }
+
+    static BufferedReader newReader(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        if (file.getFileName().toString().endsWith(".gz")) {
+            try {
+                in = new GZIPInputStream(in, 1 << 16);
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    private void save() throws IOException {
+        Path file = segmentDir().resolve(FILE_NAME);
+        Path tempFile = segmentDir().resolve(FILE_NAME + ".tmp");
+        Files.createDirectories(file.getParent());
+        Files.writeString(tempFile, GSON.toJson(this));
+        replaceFile(tempFile, file);
+    }
+}
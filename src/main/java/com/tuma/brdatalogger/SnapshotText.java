@@ -0,0 +1,296 @@
+package com.tuma.brdatalogger;
+
+import com.tuma.brdatalogger.BRDataLoggerClient.RoomSnapshot;
+import com.tuma.brdatalogger.BRDataLoggerClient.YMaxSnapshot;
+
+import java.util.Locale;
+
+// Hand-written equivalents of the GSON, CSV and summary output.
+final class SnapshotText {
+    private static final String[] JSON_REPLACEMENTS = new String[128];
+    private static final long[] POW10 = {1L, 10L, 100L, 1_000L};
+    private static final double FAST_LIMIT = 1e8;
+    private static final double TIE_WINDOW = 1e-3;
+
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            JSON_REPLACEMENTS[c] = String.format(Locale.ROOT, "\\u%04x", c);
+        }
+        JSON_REPLACEMENTS['"'] = "\\\"";
+        JSON_REPLACEMENTS['\\'] = "\\\\";
+        JSON_REPLACEMENTS['\t'] = "\\t";
+        JSON_REPLACEMENTS['\b'] = "\\b";
+        JSON_REPLACEMENTS['\n'] = "\\n";
+        JSON_REPLACEMENTS['\r'] = "\\r";
+        JSON_REPLACEMENTS['\f'] = "\\f";
+    }
+
+    // Field order, null omission and number rendering follow Gson's reflective adapter.
+    static void appendJson(StringBuilder out, RoomSnapshot s, boolean pretty) {
+        out.append('{');
+        boolean first = true;
+        if (s.timestamp != null) {
+            key(out, "timestamp", pretty, 1, true);
+            string(out, s.timestamp);
+            first = false;
+        }
+        if (s.profile != null) {
+            key(out, "profile", pretty, 1, first);
+            string(out, s.profile);
+            first = false;
+        }
+        key(out, "roomId", pretty, 1, first);
+        out.append(s.roomId);
+        key(out, "centerX", pretty, 1, false);
+        out.append(s.centerX);
+        key(out, "centerY", pretty, 1, false);
+        out.append(s.centerY);
+        key(out, "centerZ", pretty, 1, false);
+        out.append(s.centerZ);
+        key(out, "minX", pretty, 1, false);
+        out.append(s.minX);
+        key(out, "maxX", pretty, 1, false);
+        out.append(s.maxX);
+        key(out, "minY", pretty, 1, false);
+        out.append(s.minY);
+        key(out, "maxY", pretty, 1, false);
+        out.append(s.maxY);
+        key(out, "minZ", pretty, 1, false);
+        out.append(s.minZ);
+        key(out, "maxZ", pretty, 1, false);
+        out.append(s.maxZ);
+        key(out, "roomCells", pretty, 1, false);
+        out.append(s.roomCells);
+        key(out, "exitCells", pretty, 1, false);
+        out.append(s.exitCells);
+        key(out, "exitPercent", pretty, 1, false);
+        out.append(s.exitPercent);
+        key(out, "standableCount", pretty, 1, false);
+        out.append(s.standableCount);
+        key(out, "placeableCount", pretty, 1, false);
+        out.append(s.placeableCount);
+        key(out, "sealed", pretty, 1, false);
+        out.append(s.sealed);
+        key(out, "exitComponents", pretty, 1, false);
+        out.append(s.exitComponents);
+        key(out, "maxExitComponentSize", pretty, 1, false);
+        out.append(s.maxExitComponentSize);
+        key(out, "privateBestScore", pretty, 1, false);
+        out.append(s.privateBestScore);
+        key(out, "blastSafeCells", pretty, 1, false);
+        out.append(s.blastSafeCells);
+        key(out, "blastSafePercent", pretty, 1, false);
+        out.append(s.blastSafePercent);
+        key(out, "idealPrivateCount", pretty, 1, false);
+        out.append(s.idealPrivateCount);
+        YMaxSnapshot y = s.yMax;
+        if (y != null) {
+            key(out, "yMax", pretty, 1, false);
+            out.append('{');
+            key(out, "yMax", pretty, 2, true);
+            out.append(y.yMax);
+            key(out, "pad", pretty, 2, false);
+            out.append(y.pad);
+            key(out, "width", pretty, 2, false);
+            out.append(y.width);
+            key(out, "depth", pretty, 2, false);
+            out.append(y.depth);
+            key(out, "loaded", pretty, 2, false);
+            out.append(y.loaded);
+            key(out, "skipped", pretty, 2, false);
+            out.append(y.skipped);
+            key(out, "bedrock", pretty, 2, false);
+            out.append(y.bedrock);
+            key(out, "air", pretty, 2, false);
+            out.append(y.air);
+            key(out, "other", pretty, 2, false);
+            out.append(y.other);
+            key(out, "bedrockPct", pretty, 2, false);
+            out.append(y.bedrockPct);
+            key(out, "airPct", pretty, 2, false);
+            out.append(y.airPct);
+            key(out, "otherPct", pretty, 2, false);
+            out.append(y.otherPct);
+            close(out, pretty, 1);
+        }
+        close(out, pretty, 0);
+    }
+
+    static void appendCsv(StringBuilder out, RoomSnapshot s) {
+        csvString(out, s.timestamp);
+        out.append(',');
+        csvString(out, s.profile);
+        out.append(',').append(s.roomId).append(',');
+        csvDouble(out, s.centerX);
+        out.append(',');
+        csvDouble(out, s.centerY);
+        out.append(',');
+        csvDouble(out, s.centerZ);
+        out.append(',').append(s.minX)
+                .append(',').append(s.maxX)
+                .append(',').append(s.minY)
+                .append(',').append(s.maxY)
+                .append(',').append(s.minZ)
+                .append(',').append(s.maxZ)
+                .append(',').append(s.roomCells)
+                .append(',').append(s.exitCells)
+                .append(',').append(s.exitPercent)
+                .append(',').append(s.standableCount)
+                .append(',').append(s.placeableCount)
+                .append(',').append(s.sealed)
+                .append(',').append(s.exitComponents)
+                .append(',').append(s.maxExitComponentSize)
+                .append(',').append(s.privateBestScore)
+                .append(',').append(s.blastSafeCells)
+                .append(',');
+        csvDouble(out, s.blastSafePercent);
+        YMaxSnapshot y = s.yMax;
+        out.append(',').append(s.idealPrivateCount)
+                .append(',').append(y.yMax)
+                .append(',').append(y.pad)
+                .append(',').append(y.width)
+                .append(',').append(y.depth)
+                .append(',').append(y.loaded)
+                .append(',').append(y.skipped)
+                .append(',').append(y.bedrock)
+                .append(',').append(y.air)
+                .append(',').append(y.other)
+                .append(',');
+        csvDouble(out, y.bedrockPct);
+        out.append(',');
+        csvDouble(out, y.airPct);
+        out.append(',');
+        csvDouble(out, y.otherPct);
+    }
+
+    static void appendSummary(StringBuilder out, RoomSnapshot s) {
+        YMaxSnapshot y = s.yMax;
+        out.append(s.timestamp).append(" room=").append(s.roomId).append(" center=(");
+        fixed(out, s.centerX, 2);
+        out.append(',');
+        fixed(out, s.centerY, 2);
+        out.append(',');
+        fixed(out, s.centerZ, 2);
+        out.append(") size=").append(s.roomCells)
+                .append(" exits=").append(s.exitCells).append('(').append(s.exitPercent).append("%) ")
+                .append(s.sealed ? "sealed" : "open")
+                .append(" priv=").append(s.privateBestScore)
+                .append(" ideal=").append(s.idealPrivateCount)
+                .append(" blastSafe=");
+        if (s.blastSafeCells >= 0) {
+            out.append(s.blastSafeCells);
+        } else {
+            out.append('-');
+        }
+        out.append('(');
+        percent(out, s.blastSafePercent >= 0, s.blastSafePercent);
+        out.append(") yMax=").append(y.yMax).append(" loaded=").append(Math.max(0, y.loaded)).append(" b=");
+        percent(out, y.loaded > 0, y.bedrockPct);
+        out.append(" a=");
+        percent(out, y.loaded > 0, y.airPct);
+        out.append(" o=");
+        percent(out, y.loaded > 0, y.otherPct);
+    }
+
+    private static void key(StringBuilder out, String name, boolean pretty, int depth, boolean first) {
+        if (!first) {
+            out.append(',');
+        }
+        if (pretty) {
+            indent(out, depth);
+        }
+        out.append('"').append(name).append(pretty ? "\": " : "\":");
+    }
+
+    private static void close(StringBuilder out, boolean pretty, int depth) {
+        if (pretty) {
+            indent(out, depth);
+        }
+        out.append('}');
+    }
+
+    private static void indent(StringBuilder out, int depth) {
+        out.append('\n');
+        for (int i = 0; i < depth; i++) {
+            out.append("  ");
+        }
+    }
+
+    private static void string(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 128) {
+                String replacement = JSON_REPLACEMENTS[c];
+                if (replacement != null) {
+                    out.append(replacement);
+                } else {
+                    out.append(c);
+                }
+            } else if (c == '\u2028') {
+                out.append("\\u2028");
+            } else if (c == '\u2029') {
+                out.append("\\u2029");
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    private static void csvString(StringBuilder out, String value) {
+        if (value == null) {
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    private static void csvDouble(StringBuilder out, double value) {
+        if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+            fixed(out, value, 3);
+        }
+    }
+
+    private static void percent(StringBuilder out, boolean present, double value) {
+        if (!present) {
+            out.append('-');
+            return;
+        }
+        csvDouble(out, value);
+        out.append('%');
+    }
+
+    // Matches Formatter's half-up rounding except at ties, large magnitudes and non-finite
+    // values, which go to Formatter.
+    private static void fixed(StringBuilder out, double value, int digits) {
+        double abs = Math.abs(value);
+        if (abs < FAST_LIMIT) {
+            long scale = POW10[digits];
+            double scaled = abs * scale;
+            double floor = Math.floor(scaled);
+            double frac = scaled - floor;
+            if (Math.abs(frac - 0.5) > TIE_WINDOW) {
+                long units = (long) floor + (frac > 0.5 ? 1L : 0L);
+                if (value < 0.0 || Double.doubleToRawLongBits(value) == Long.MIN_VALUE) {
+                    out.append('-');
+                }
+                out.append(units / scale).append('.');
+                long fraction = units % scale;
+                for (long p = scale / 10L; p > fraction && p > 1L; p /= 10L) {
+                    out.append('0');
+                }
+                out.append(fraction);
+                return;
+            }
+        }
+        out.append(String.format(Locale.ROOT, digits == 2 ? "%.2f" : "%.3f", value));
+    }
+}
@@ -0,0 +1,723 @@
+package com.tuma.brdatalogger;
+
+import com.tuma.brdatalogger.BRDataLoggerClient.RoomSnapshot;
+import net.minecraft.client.MinecraftClient;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static com.tuma.brdatalogger.BRDataLoggerClient.FILE_TS_FORMAT;
+import static com.tuma.brdatalogger.BRDataLoggerClient.LOGGER;
+import static com.tuma.brdatalogger.BRDataLoggerClient.STATS;
+import static com.tuma.brdatalogger.BRDataLoggerClient.config;
+import static com.tuma.brdatalogger.BRDataLoggerClient.getProfileDir;
+import static com.tuma.brdatalogger.BRDataLoggerClient.replaceFile;
+import static com.tuma.brdatalogger.BRDataLoggerClient.sendMessage;
+
+final class SnapshotWriter implements Runnable {
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final long FLUSH_TIMEOUT_MS = 5_000L;
+    private static final long IDLE_POLL_MS = 1_000L;
+    private static final Object SHUTDOWN = new Object();
+
+    private static final int WRITE_BUFFER_SIZE = 256 * 1024;
+    private static final int QUERY_LIMIT = 10;
+
+    private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final List<RoomSnapshot> batch = new ArrayList<>();
+    // Polled by the analysis thread, see applyWrittenRows.
+    final Queue<WrittenRows> written = new ConcurrentLinkedQueue<>();
+    private final Map<String, ProfileSink> sinks = new HashMap<>();
+    private final Map<String, RoomIndex> indexes = new HashMap<>();
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final StringBuilder jsonLines = new StringBuilder();
+    private final StringBuilder csvLines = new StringBuilder();
+    private final StringBuilder summaryLines = new StringBuilder();
+    private final StringBuilder prettyText = new StringBuilder();
+    private ByteBuffer buffer;
+    private Thread thread;
+    private volatile boolean running;
+    private long batchStartMs;
+    private long prettyDueMs;
+    private long dropped;
+    private long textBytes;
+
+    private synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this, "BRBaseLogger-Writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Never waits: a dropped snapshot has its room state forgotten and is retried next pass,
+    // so blocking here would only stall the rest of the analysis batch behind a slow disk.
+    boolean enqueue(RoomSnapshot snapshot) {
+        start();
+        if (queue.offer(snapshot)) {
+            return true;
+        }
+        dropped++;
+        if (dropped == 1 || dropped % 100 == 0) {
+            LOGGER.warn("Writer queue full, dropped snapshot for room {} ({} dropped so far).", snapshot.roomId, dropped);
+        }
+        return false;
+    }
+
+    void flush() {
+        if (!running) {
+            return;
+        }
+        CountDownLatch done = new CountDownLatch(1);
+        try {
+            if (queue.offer(done, FLUSH_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                done.await(FLUSH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } else {
+                LOGGER.warn("Timed out waiting to flush snapshot writer.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    void export(String profile, String format, MinecraftClient client) {
+        start();
+        if (!queue.offer(new ExportRequest(profile, format, client))) {
+            sendMessage(client, "[BR-LOG] Writer is busy, try the export again.");
+        }
+    }
+
+
+    void notice(DumpNotice notice) {
+        start();
+        if (!queue.offer(notice)) {
+            sendMessage(notice.client, "[BR-LOG] Writer is busy, the dump is still being written.");
+        }
+    }
+
+    void query(IndexQuery query) {
+        start();
+        if (!queue.offer(query)) {
+            sendMessage(query.client, "[BR-LOG] Writer is busy, try again.");
+        }
+    }
+
+    void shutdown() {
+        Thread t;
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            t = thread;
+        }
+        try {
+            if (queue.offer(SHUTDOWN, FLUSH_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                t.join(FLUSH_TIMEOUT_MS);
+            } else {
+                LOGGER.warn("Timed out waiting to stop snapshot writer.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            Object item;
+            try {
+                item = queue.poll(nextWaitMs(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                item = SHUTDOWN;
+            }
+            try {
+                if (item == SHUTDOWN) {
+                    writeBatch();
+                    break;
+                }
+                if (item instanceof CountDownLatch) {
+                    writeBatch();
+                    flushPretty();
+                    syncSinks();
+                    ((CountDownLatch) item).countDown();
+                    continue;
+                }
+                if (item instanceof ExportRequest) {
+                    writeBatch();
+                    runExport((ExportRequest) item);
+                    continue;
+                }
+                if (item instanceof IndexQuery) {
+                    writeBatch();
+                    runQuery((IndexQuery) item);
+                    continue;
+                }
+                if (item instanceof DumpNotice) {
+                    writeBatch();
+                    DumpNotice notice = (DumpNotice) item;
+                    sendMessage(notice.client, "[BR-LOG] Manual dump complete: " + notice.rooms + " rooms written.");
+                    continue;
+                }
+                if (item instanceof RoomSnapshot) {
+                    if (batch.isEmpty()) {
+                        batchStartMs = System.currentTimeMillis();
+                    }
+                    batch.add((RoomSnapshot) item);
+                }
+                if (batch.size() >= Math.max(1, config.writerBatchSize)
+                        || (!batch.isEmpty() && nextWaitMs() <= 0L)) {
+                    writeBatch();
+                }
+                if (prettyDueMs != 0L && System.currentTimeMillis() >= prettyDueMs) {
+                    flushPretty();
+                }
+            } catch (Throwable t) {
+                LOGGER.warn("Snapshot writer failed.", t);
+                batch.clear();
+            }
+        }
+        closeSinks();
+        synchronized (this) {
+            running = false;
+            thread = null;
+        }
+    }
+
+    private long nextWaitMs() {
+        long now = System.currentTimeMillis();
+        long wait = batch.isEmpty()
+                ? IDLE_POLL_MS
+                : Math.max(0L, batchStartMs + config.writerFlushIntervalMs - now);
+        if (prettyDueMs != 0L) {
+            wait = Math.min(wait, Math.max(0L, prettyDueMs - now));
+        }
+        return wait;
+    }
+
+    private void writeBatch() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Map<String, List<RoomSnapshot>> byProfile = new LinkedHashMap<>();
+        for (RoomSnapshot snapshot : batch) {
+            byProfile.computeIfAbsent(snapshot.profile, k -> new ArrayList<>()).add(snapshot);
+        }
+        long seq = batch.get(batch.size() - 1).seq;
+        batch.clear();
+        List<RoomSnapshot> failed = new ArrayList<>();
+        for (Map.Entry<String, List<RoomSnapshot>> entry : byProfile.entrySet()) {
+            String profile = entry.getKey();
+            List<RoomSnapshot> snapshots = entry.getValue();
+            if (writeProfileBatch(profile, snapshots)) {
+                writeKnown(profile, snapshots);
+            } else {
+                // The rows are lost, so the analysis thread must not skip or dedupe them next pass.
+                failed.addAll(snapshots);
+            }
+        }
+        written.add(new WrittenRows(seq, failed));
+    }
+
+    private ProfileSink sink(String profile) {
+        ProfileSink sink = sinks.get(profile);
+        if (sink == null) {
+            try {
+                sink = ProfileSink.open(getProfileDir(profile));
+            } catch (IOException e) {
+                LOGGER.warn("Failed to open profile directory: {}", getProfileDir(profile), e);
+                return null;
+            }
+            sinks.put(profile, sink);
+        }
+        return sink;
+    }
+
+    private void writeKnown(String profile, List<RoomSnapshot> snapshots) {
+        int size = 0;
+        for (RoomSnapshot snapshot : snapshots) {
+            if (snapshot.known != null) {
+                size += snapshot.known.length;
+            }
+        }
+        ProfileSink sink = size == 0 ? null : sink(profile);
+        if (sink == null) {
+            return;
+        }
+        ByteBuffer records = ByteBuffer.allocate(size);
+        for (RoomSnapshot snapshot : snapshots) {
+            if (snapshot.known != null) {
+                records.put(snapshot.known);
+            }
+        }
+        try {
+            sink.appendKnown(records.array());
+        } catch (IOException e) {
+            LOGGER.warn("Failed to append known rooms in {}", sink.dir, e);
+            ProfileSink.closeQuietly(sink.known);
+            sink.known = null;
+        }
+    }
+
+    // Text (or the binary log when text is off) is the source of truth and is rolled back on
+    // failure; the binary log and room index are derived from it afterwards.
+    private boolean writeProfileBatch(String profile, List<RoomSnapshot> snapshots) {
+        ProfileSink sink = sink(profile);
+        if (sink == null) {
+            return false;
+        }
+        // opened first, so a rebuild does not already contain this batch
+        RoomIndex index = index(profile);
+        LoggerEvents.WriteEvent event = new LoggerEvents.WriteEvent();
+        event.begin();
+        long textStart = textBytes;
+        long recordBytes = 0L;
+        // A binary log started next to existing text rows does not hold all of them.
+        boolean logComplete;
+        try {
+            logComplete = !config.binaryLog || sink.log != null || !sink.hasTextRows();
+        } catch (IOException e) {
+            logComplete = false;
+        }
+
+        if (config.textLogs) {
+            try {
+                sink.rollIfNeeded(System.currentTimeMillis());
+            } catch (IOException e) {
+                LOGGER.warn("Failed to roll text segments in {}", sink.dir, e);
+                discardSink(profile, sink);
+                return false;
+            }
+            if (!writeTextLogs(profile, sink, snapshots)) {
+                return false;
+            }
+        }
+        if (config.binaryLog) {
+            long ioStart = STATS.start();
+            try {
+                if (sink.log == null) {
+                    Path file = sink.dir.resolve(BinarySnapshotLog.FILE_NAME);
+                    sink.log = BinarySnapshotLog.open(file, logComplete);
+                }
+                sink.log.append(snapshots);
+                recordBytes += (long) snapshots.size() * BinarySnapshotLog.RECORD_SIZE;
+                STATS.io.record(ioStart);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to append binary snapshots in {}", sink.dir, e);
+                if (sink.log != null) {
+                    sink.log.close(false);
+                    sink.log = null;
+                }
+                if (!config.textLogs) {
+                    return false;
+                }
+                BinarySnapshotLog.markIncomplete(sink.dir.resolve(BinarySnapshotLog.FILE_NAME));
+            }
+        }
+        if (index != null) {
+            long ioStart = STATS.start();
+            try {
+                index.append(snapshots);
+                recordBytes += (long) snapshots.size() * RoomIndex.RECORD_SIZE;
+                STATS.io.record(ioStart);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to update room index in {}", sink.dir, e);
+                indexes.remove(profile);
+                index.discard();
+            }
+        }
+        boolean synced = maybeForce(sink);
+        if (event.shouldCommit()) {
+            event.profile = profile;
+            event.rows = snapshots.size();
+            event.bytes = recordBytes + textBytes - textStart;
+            event.synced = synced;
+            event.commit();
+        }
+        return true;
+    }
+
+    private boolean writeTextLogs(String profile, ProfileSink sink, List<RoomSnapshot> snapshots) {
+        String nl = System.lineSeparator();
+        long serializeStart = STATS.start();
+        jsonLines.setLength(0);
+        csvLines.setLength(0);
+        summaryLines.setLength(0);
+        for (RoomSnapshot snapshot : snapshots) {
+            SnapshotText.appendJson(jsonLines, snapshot, false);
+            jsonLines.append(nl);
+            SnapshotText.appendCsv(csvLines, snapshot);
+            csvLines.append(nl);
+            SnapshotText.appendSummary(summaryLines, snapshot);
+            summaryLines.append(nl);
+            sink.prettyPending.put(snapshot.roomId, snapshot);
+        }
+        STATS.serialize.record(serializeStart);
+        if (prettyDueMs == 0L && !sink.prettyPending.isEmpty()) {
+            prettyDueMs = System.currentTimeMillis() + Math.max(0L, config.prettyFlushIntervalMs);
+        }
+
+        long ioStart = STATS.start();
+        long[] sizes = null;
+        try {
+            sizes = sink.textSizes();
+            writeText(sink.jsonl, jsonLines);
+            writeText(sink.csv, csvLines);
+            writeText(sink.summary, summaryLines);
+            STATS.io.record(ioStart);
+            return true;
+        } catch (IOException e) {
+            LOGGER.warn("Failed to append snapshots in {}", sink.dir, e);
+            if (sizes != null) {
+                sink.truncateText(sizes);
+            }
+            discardSink(profile, sink);
+            return false;
+        }
+    }
+
+    // Pretty files do not go through the broken text channels, so the pending ones are
+    // still written before the sink is dropped; the next batch reopens a fresh sink.
+    private void discardSink(String profile, ProfileSink sink) {
+        sinks.remove(profile);
+        writePretty(sink);
+        sink.close(false);
+    }
+
+    // Latest snapshot per room wins; each file is written next to its target and renamed
+    // over it, so readers never see a partially written document.
+    private void flushPretty() {
+        prettyDueMs = 0L;
+        for (ProfileSink sink : sinks.values()) {
+            writePretty(sink);
+        }
+    }
+
+    private void writePretty(ProfileSink sink) {
+        if (sink.prettyPending.isEmpty()) {
+            return;
+        }
+        LoggerEvents.PrettyWriteEvent event = new LoggerEvents.PrettyWriteEvent();
+        event.begin();
+        long textStart = textBytes;
+        for (RoomSnapshot snapshot : sink.prettyPending.values()) {
+            Path prettyFile = sink.prettyDir.resolve("room_" + snapshot.roomId + ".json");
+            Path tempFile = sink.prettyDir.resolve("room_" + snapshot.roomId + ".json.tmp");
+            prettyText.setLength(0);
+            SnapshotText.appendJson(prettyText, snapshot, true);
+            try {
+                try (FileChannel channel = FileChannel.open(tempFile,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    writeText(channel, prettyText);
+                }
+                replaceFile(tempFile, prettyFile);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to write pretty snapshot for room {}", snapshot.roomId, e);
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException ignored) {
+                    // left for the next write of this room to replace
+                }
+            }
+        }
+        if (event.shouldCommit()) {
+            event.profile = sink.dir.getFileName().toString();
+            event.files = sink.prettyPending.size();
+            event.bytes = textBytes - textStart;
+            event.commit();
+        }
+        sink.prettyPending.clear();
+    }
+
+    private boolean maybeForce(ProfileSink sink) {
+        if (Durability.parse(config.durability) == Durability.PERIODIC) {
+            long now = System.currentTimeMillis();
+            if (now - sink.lastForceMs >= config.forceIntervalMs) {
+                sink.lastForceMs = now;
+                long ioStart = STATS.start();
+                try {
+                    sink.force();
+                    STATS.io.record(ioStart);
+                    return true;
+                } catch (IOException e) {
+                    LOGGER.warn("Failed to sync {}", sink.dir, e);
+                }
+            }
+        }
+        return false;
+    }
+
+    private void writeText(FileChannel channel, CharSequence text) throws IOException {
+        if (text.length() == 0) {
+            return;
+        }
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        }
+        CharBuffer chars = CharBuffer.wrap(text);
+        encoder.reset();
+        buffer.clear();
+        CoderResult result;
+        while ((result = encoder.encode(chars, buffer, true)).isOverflow()) {
+            drain(channel);
+        }
+        if (result.isError()) {
+            result.throwException();
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            drain(channel);
+        }
+        drain(channel);
+    }
+
+    private void drain(FileChannel channel) throws IOException {
+        buffer.flip();
+        textBytes += buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void runExport(ExportRequest request) {
+        Path dir = getProfileDir(request.profile);
+        Path source = dir.resolve(BinarySnapshotLog.FILE_NAME);
+        boolean csv = request.format.equals("csv");
+        String nl = System.lineSeparator();
+        Path target = dir.resolve("exports").resolve("bases-" + FILE_TS_FORMAT.format(LocalDateTime.now()) + (csv ? ".csv" : ".jsonl"));
+        if (!Files.exists(source) || !BinarySnapshotLog.isComplete(source) && !SegmentManifest.load(dir).files(".jsonl").isEmpty()) {
+            exportSegments(request, dir, csv, target);
+            return;
+        }
+        try {
+            Files.createDirectories(target.getParent());
+            long rows;
+            try (BufferedWriter out = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+                if (csv) {
+                    out.write(RoomSnapshot.csvHeader());
+                    out.write(nl);
+                }
+                StringBuilder line = new StringBuilder();
+                rows = BinarySnapshotLog.read(source, request.profile, snapshot -> {
+                    line.setLength(0);
+                    if (csv) {
+                        SnapshotText.appendCsv(line, snapshot);
+                    } else {
+                        SnapshotText.appendJson(line, snapshot, false);
+                    }
+                    line.append(nl);
+                    try {
+                        out.append(line);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            sendMessage(request.client, "[BR-LOG] Exported " + rows + " rows to " + target);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to export {}", source, e);
+            sendMessage(request.client, "[BR-LOG] Export failed: " + e.getMessage());
+        }
+    }
+
+    private RoomIndex index(String profile) {
+        RoomIndex index = indexes.get(profile);
+        if (index == null) {
+            try {
+                index = RoomIndex.open(getProfileDir(profile));
+            } catch (IOException e) {
+                LOGGER.warn("Failed to open room index for {}", profile, e);
+                return null;
+            }
+            indexes.put(profile, index);
+        }
+        return index;
+    }
+
+    private void runQuery(IndexQuery query) {
+        long start = System.nanoTime();
+        RoomIndex index = Files.isDirectory(getProfileDir(query.profile)) ? index(query.profile) : null;
+        if (index == null) {
+            sendMessage(query.client, "[BR-LOG] No rooms logged for " + query.profile + ".");
+            return;
+        }
+        List<RoomIndex.Entry> hits = query.filter == null
+                ? index.near(query.x, query.z, query.radius)
+                : index.find(query.filter);
+        hits.sort(Comparator.comparingDouble((RoomIndex.Entry e) -> e.distanceTo(query.x, query.z))
+                .thenComparingLong(e -> e.roomId));
+        double ms = (System.nanoTime() - start) / 1_000_000.0;
+        String scope = query.filter == null ? " within " + query.radius + " blocks" : " matching";
+        sendMessage(query.client, String.format(Locale.ROOT, "[BR-LOG] %d of %d rooms%s (%.2f ms):",
+                hits.size(), index.size(), scope, ms));
+        for (int i = 0; i < Math.min(QUERY_LIMIT, hits.size()); i++) {
+            RoomIndex.Entry e = hits.get(i);
+            sendMessage(query.client, String.format(Locale.ROOT, "  #%d at %.0f %.0f %.0f, %.0f away: cells=%d exits=%d ideal=%d blast=%d",
+                    e.roomId, e.centerX, e.centerY, e.centerZ, e.distanceTo(query.x, query.z),
+                    e.roomCells, e.exitCells, e.idealPrivateCount, e.blastSafeCells));
+        }
+        if (hits.size() > QUERY_LIMIT) {
+            sendMessage(query.client, "  ... " + (hits.size() - QUERY_LIMIT) + " more");
+        }
+    }
+
+    // Without a binary log the text segments are the only history; they are read back in
+    // manifest order, gzipped or not, and the CSV keeps a single header.
+    private void exportSegments(ExportRequest request, Path dir, boolean csv, Path target) {
+        List<Path> files = SegmentManifest.load(dir).files(csv ? ".csv" : ".jsonl");
+        if (files.isEmpty()) {
+            sendMessage(request.client, "[BR-LOG] No logs for " + request.profile + ".");
+            return;
+        }
+        String nl = System.lineSeparator();
+        long rows = 0L;
+        try {
+            Files.createDirectories(target.getParent());
+            try (BufferedWriter out = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+                if (csv) {
+                    out.write(RoomSnapshot.csvHeader());
+                    out.write(nl);
+                }
+                for (Path file : files) {
+                    try (BufferedReader in = SegmentManifest.newReader(file)) {
+                        String line = in.readLine();
+                        if (csv && line != null) {
+                            line = in.readLine();
+                        }
+                        for (; line != null; line = in.readLine()) {
+                            if (line.isEmpty()) {
+                                continue;
+                            }
+                            out.write(line);
+                            out.write(nl);
+                            rows++;
+                        }
+                    }
+                }
+            }
+            sendMessage(request.client, "[BR-LOG] Exported " + rows + " rows from " + files.size() + " segments to " + target);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to export segments in {}", dir, e);
+            sendMessage(request.client, "[BR-LOG] Export failed: " + e.getMessage());
+        }
+    }
+
+    private void syncSinks() {
+        if (Durability.parse(config.durability) == Durability.NONE) {
+            return;
+        }
+        for (ProfileSink sink : sinks.values()) {
+            try {
+                sink.force();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to sync {}", sink.dir, e);
+            }
+        }
+    }
+
+    private void closeSinks() {
+        flushPretty();
+        boolean force = Durability.parse(config.durability) != Durability.NONE;
+        for (ProfileSink sink : sinks.values()) {
+            sink.close(force);
+        }
+        sinks.clear();
+        for (RoomIndex index : indexes.values()) {
+            index.close(force);
+        }
+    }
+
+    enum Durability {
+        NONE,
+        PERIODIC,
+        DISCONNECT;
+
+        static Durability parse(String value) {
+            if (value != null) {
+                for (Durability d : values()) {
+                    if (d.name().equalsIgnoreCase(value.trim())) {
+                        return d;
+                    }
+                }
+            }
+            return DISCONNECT;
+        }
+    }
+
+    static final class IndexQuery {
+        private final String profile;
+        private final MinecraftClient client;
+        private final double x;
+        private final double z;
+        private final int radius;
+        private final Predicate<RoomIndex.Entry> filter;
+
+        IndexQuery(String profile, MinecraftClient client, double x, double z, int radius, Predicate<RoomIndex.Entry> filter) {
+            this.profile = profile;
+            this.client = client;
+            this.x = x;
+            this.z = z;
+            this.radius = radius;
+            this.filter = filter;
+        }
+    }
+
+    static final class WrittenRows {
+        final long seq;
+        final List<RoomSnapshot> failed;
+
+        private WrittenRows(long seq, List<RoomSnapshot> failed) {
+            this.seq = seq;
+            this.failed = failed;
+        }
+    }
+
+    static final class DumpNotice {
+        private final MinecraftClient client;
+        private final int rooms;
+
+        DumpNotice(MinecraftClient client, int rooms) {
+            this.client = client;
+            this.rooms = rooms;
+        }
+    }
+
+    static final class ExportRequest {
+        private final String profile;
+        private final String format;
+        private final MinecraftClient client;
+
+        private ExportRequest(String profile, String format, MinecraftClient client) {
+            this.profile = profile;
+            this.format = format;
+            this.client = client;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.tuma.brdatalogger;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.chunk.WorldChunk;
+
+final class YMaxLayerCache {
+    private final Long2ObjectOpenHashMap<ChunkLayer> chunks = new Long2ObjectOpenHashMap<>();
+    private ClientWorld world;
+    private int yMax = Integer.MIN_VALUE;
+
+    ChunkLayer get(ClientWorld world, int chunkX, int chunkZ, int yMax) {
+        track(world, yMax);
+        long key = ChunkPos.toLong(chunkX, chunkZ);
+        ChunkLayer layer = chunks.get(key);
+        if (layer != null) {
+            return layer;
+        }
+        if (!world.getChunkManager().isChunkLoaded(chunkX, chunkZ)) {
+            return null;
+        }
+        WorldChunk chunk = world.getChunkManager().getWorldChunk(chunkX, chunkZ, false);
+        if (chunk == null) {
+            return null;
+        }
+        layer = ChunkLayer.classify(chunk, yMax);
+        chunks.put(key, layer);
+        return layer;
+    }
+
+    void onChunkLoad(ClientWorld world, WorldChunk chunk, int yMax) {
+        if (yMax == Integer.MIN_VALUE) {
+            return;
+        }
+        track(world, yMax);
+        chunks.put(chunk.getPos().toLong(), ChunkLayer.classify(chunk, yMax));
+    }
+
+    void onChunkUnload(ClientWorld world, WorldChunk chunk) {
+        if (world == this.world) {
+            chunks.remove(chunk.getPos().toLong());
+        }
+    }
+
+    void onBlockUpdate(BlockPos pos) {
+        if (pos.getY() == yMax) {
+            chunks.remove(ChunkPos.toLong(pos.getX() >> 4, pos.getZ() >> 4));
+        }
+    }
+
+    void clear() {
+        chunks.clear();
+        world = null;
+    }
+
+    private void track(ClientWorld world, int yMax) {
+        if (world != this.world || yMax != this.yMax) {
+            chunks.clear();
+            this.world = world;
+            this.yMax = yMax;
+        }
+    }
+}
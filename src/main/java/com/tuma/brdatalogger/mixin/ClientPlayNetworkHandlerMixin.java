@@ -0,0 +1,47 @@
+package com.tuma.brdatalogger.mixin;
+
+import com.tuma.brdatalogger.BRDataLoggerClient;
+import net.minecraft.client.network.ClientPlayNetworkHandler;
+import net.minecraft.network.packet.s2c.play.BlockUpdateS2CPacket;
+import net.minecraft.network.packet.s2c.play.ChunkDeltaUpdateS2CPacket;
+import net.minecraft.network.packet.s2c.play.ScoreboardDisplayS2CPacket;
+import net.minecraft.network.packet.s2c.play.ScoreboardObjectiveUpdateS2CPacket;
+import net.minecraft.network.packet.s2c.play.ScoreboardPlayerUpdateS2CPacket;
+import net.minecraft.network.packet.s2c.play.TeamS2CPacket;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(ClientPlayNetworkHandler.class)
+public class ClientPlayNetworkHandlerMixin {
+    @Inject(method = "onBlockUpdate", at = @At("TAIL"))
+    private void brdatalogger_onBlockUpdate(BlockUpdateS2CPacket packet, CallbackInfo ci) {
+        BRDataLoggerClient.onBlockUpdate(packet.getPos());
+    }
+
+    @Inject(method = "onChunkDeltaUpdate", at = @At("TAIL"))
+    private void brdatalogger_onChunkDeltaUpdate(ChunkDeltaUpdateS2CPacket packet, CallbackInfo ci) {
+        packet.visitUpdates((pos, state) -> BRDataLoggerClient.onBlockUpdate(pos));
+    }
+
+    @Inject(method = "onScoreboardObjectiveUpdate", at = @At("TAIL"))
+    private void brdatalogger_onScoreboardObjectiveUpdate(ScoreboardObjectiveUpdateS2CPacket packet, CallbackInfo ci) {
+        BRDataLoggerClient.onScoreboardChanged();
+    }
+
+    @Inject(method = "onScoreboardPlayerUpdate", at = @At("TAIL"))
+    private void brdatalogger_onScoreboardPlayerUpdate(ScoreboardPlayerUpdateS2CPacket packet, CallbackInfo ci) {
+        BRDataLoggerClient.onScoreboardChanged();
+    }
+
+    @Inject(method = "onTeam", at = @At("TAIL"))
+    private void brdatalogger_onTeam(TeamS2CPacket packet, CallbackInfo ci) {
+        BRDataLoggerClient.onScoreboardChanged();
+    }
+
+    @Inject(method = "onScoreboardDisplay", at = @At("TAIL"))
+    private void brdatalogger_onScoreboardDisplay(ScoreboardDisplayS2CPacket packet, CallbackInfo ci) {
+        BRDataLoggerClient.onScoreboardChanged();
+    }
+}
@@ -10,6 +10,7 @@ import net.minecraft.scoreboard.ScoreboardPlayerScore;
 import net.minecraft.scoreboard.Team;
 import net.minecraft.text.Text;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
@@ -20,21 +21,36 @@ import java.util.List;
 
 @Mixin(InGameHud.class)
 public class InGameHudMixin {
+    @Unique
+    private final List<Text> brdatalogger_lines = new ArrayList<>();
+    @Unique
+    private ScoreboardObjective brdatalogger_objective;
+    @Unique
+    private long brdatalogger_revision = -1L;
+
     @Inject(method = "renderScoreboardSidebar", at = @At("HEAD"))
     private void brdatalogger_capture(DrawContext context, ScoreboardObjective objective, CallbackInfo ci) {
         if (objective == null) {
             return;
         }
+        // Every client-side scoreboard change comes from a packet that bumps the revision.
+        long revision = BRDataLoggerClient.getScoreboardRevision();
+        if (objective == brdatalogger_objective && revision == brdatalogger_revision) {
+            BRDataLoggerClient.touchHudSnapshot();
+            return;
+        }
         MinecraftClient client = MinecraftClient.getInstance();
         Scoreboard scoreboard = BRDataLoggerClient.getClientScoreboardForHud(client);
         if (scoreboard == null) {
             return;
         }
+        // An empty sidebar is re-read next frame and leaves the previous lines to expire.
         Collection<ScoreboardPlayerScore> scores = scoreboard.getAllPlayerScores(objective);
         if (scores == null || scores.isEmpty()) {
             return;
         }
-        List<Text> lines = new ArrayList<>();
+        List<Text> lines = brdatalogger_lines;
+        lines.clear();
         for (ScoreboardPlayerScore score : scores) {
             String name = score.getPlayerName();
             Team team = scoreboard.getPlayerTeam(name);
@@ -42,5 +58,8 @@ public class InGameHudMixin {
             lines.add(text);
         }
         BRDataLoggerClient.updateHudSnapshot(objective.getDisplayName(), lines);
+        lines.clear();
+        brdatalogger_objective = objective;
+        brdatalogger_revision = revision;
     }
 }
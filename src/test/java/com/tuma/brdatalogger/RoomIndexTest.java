@@ -0,0 +1,67 @@
+package com.tuma.brdatalogger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+// BedrockRooms hands out new roomIds on every rescan and reconnect, so rooms.idx has to tell
+// rooms apart by their bounds or it fills up with copies of the same room.
+public class RoomIndexTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void rescanWithNewIdsKeepsOneEntryPerRoom() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        RoomIndex index = RoomIndex.open(dir);
+        index.append(scan(0L));
+        index.append(scan(1000L));
+        assertEquals(20, index.size());
+        assertEquals(1, index.near(510.0, -250.0, 16).size());
+        index.close(false);
+
+        RoomIndex reopened = RoomIndex.open(dir);
+        reopened.append(scan(5000L));
+        assertEquals(20, reopened.size());
+        reopened.close(false);
+    }
+
+    @Test
+    public void roomThatMovesWithinASessionDropsItsOldEntry() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        RoomIndex index = RoomIndex.open(dir);
+        index.append(scan(0L));
+        List<BRDataLoggerClient.RoomSnapshot> grown = new ArrayList<>();
+        grown.add(room(3L, 3, 60));
+        index.append(grown);
+        assertEquals(20, index.size());
+        index.close(false);
+
+        assertEquals(20, RoomIndex.open(dir).size());
+    }
+
+    private static List<BRDataLoggerClient.RoomSnapshot> scan(long firstId) {
+        List<BRDataLoggerClient.RoomSnapshot> rooms = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            rooms.add(room(firstId + i, i, 20));
+        }
+        return rooms;
+    }
+
+    private static BRDataLoggerClient.RoomSnapshot room(long roomId, int slot, int width) {
+        int x = slot * 100;
+        int z = -slot * 50;
+        BRDataLoggerClient.Bounds bounds = new BRDataLoggerClient.Bounds(x, x + width, -60, -50, z, z + 30);
+        BRDataLoggerClient.YMaxSnapshot yMax = new BRDataLoggerClient.YMaxSnapshot(-50, 2, width + 5, 35, 100, 0, 60, 40, 0);
+        return new BRDataLoggerClient.RoomSnapshot(Instant.EPOCH, "p", roomId, x + width / 2.0, -55.0, z + 15.0, bounds,
+                500, 20, 4, 30, 10, true, 1, 20, 50, 100, 20.0, 12, yMax);
+    }
+}
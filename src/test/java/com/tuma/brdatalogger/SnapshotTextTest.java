@@ -0,0 +1,310 @@
+package com.tuma.brdatalogger;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+// SnapshotText replaced GSON/PRETTY_GSON and the String.format based CSV and summary lines;
+// its output must stay byte-identical to them. The references below are the pre-SnapshotText
+// implementations, copied as they were.
+public class SnapshotTextTest {
+    private static final Gson PRETTY_GSON = new GsonBuilder().disableHtmlEscaping().setPrettyPrinting().create();
+    // Gson refuses NaN and infinities unless asked; SnapshotText writes them as Double.toString does.
+    private static final Gson SPECIAL_GSON = BRDataLoggerClient.GSON.newBuilder().serializeSpecialFloatingPointValues().create();
+    private static final Gson SPECIAL_PRETTY_GSON = PRETTY_GSON.newBuilder().serializeSpecialFloatingPointValues().create();
+
+    private static final String[] PROFILES = {
+            "classic-1",
+            "lite-12",
+            "a\"b\\c",
+            "tab\there\nnl\r\u0001\u001f\u007f",
+            "юникод классик",
+            "<html>&'=",
+            "emoji😀",
+            "sep  ",
+            ""
+    };
+    private static final double[] DOUBLES = {
+            0.0, -0.0, -1.0, 0.0005, -0.0005, 0.0015, 1.0005, 2.675, 0.125, -0.125, 0.005, 0.015,
+            1e-300, -1e-300, 12.345, 99_999_999.9995, 1e8, 1e8 + 0.0005, 3e7 + 0.0005, -29_999_999.4995,
+            1e15, -1e15, 1e20, 123_456_789.125, Double.MAX_VALUE, -Double.MAX_VALUE, Double.MIN_VALUE,
+            0.49999999999999994, 1e-7
+    };
+    private static final double[] NON_FINITE = {Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+
+    @Test
+    public void randomSnapshotsMatchReferences() {
+        Random random = new Random(42L);
+        for (int i = 0; i < 20_000; i++) {
+            assertMatches(Row.random(random));
+        }
+    }
+
+    @Test
+    public void edgeDoublesMatchReferences() {
+        Random random = new Random(7L);
+        for (double value : DOUBLES) {
+            for (double signed : new double[] {value, -value}) {
+                Row row = Row.random(random);
+                row.centerX = signed;
+                row.centerY = signed / 3.0;
+                row.centerZ = signed * 0.7;
+                row.blastSafePercent = Math.abs(signed);
+                assertMatches(row);
+            }
+        }
+    }
+
+    @Test
+    public void tiesAndTenthsMatchFormatter() {
+        Random random = new Random(11L);
+        for (int i = 0; i < 20_000; i++) {
+            Row row = Row.random(random);
+            row.centerX = (random.nextInt(2_000_000) - 1_000_000) / 2000.0;
+            row.centerY = (random.nextInt(2_000_000) - 1_000_000) / 200.0 + 0.005;
+            row.centerZ = random.nextInt(100_000) * 100.0 / (1 + random.nextInt(100_000));
+            row.blastSafePercent = random.nextInt(1000) / 16.0;
+            assertMatches(row);
+        }
+    }
+
+    @Test
+    public void nonFiniteDoublesMatchReferences() {
+        Random random = new Random(3L);
+        for (double value : NON_FINITE) {
+            Row row = Row.random(random);
+            row.centerX = value;
+            row.blastSafePercent = value;
+            assertEquals(row.oldCsv(), csv(row));
+            assertEquals(row.oldSummary(), summary(row));
+            assertEquals(SPECIAL_GSON.toJson(row.snapshot()), json(row, false));
+            assertEquals(SPECIAL_PRETTY_GSON.toJson(row.snapshot()), json(row, true));
+            assertThrows(IllegalArgumentException.class, () -> BRDataLoggerClient.GSON.toJson(row.snapshot()));
+        }
+    }
+
+    @Test
+    public void stringsAndNullsMatchReferences() {
+        Random random = new Random(5L);
+        for (String profile : PROFILES) {
+            Row row = Row.random(random);
+            row.profile = profile;
+            assertMatches(row);
+        }
+        Row row = Row.random(random);
+        row.profile = null;
+        assertMatches(row);
+
+        row.withYMax = false;
+        assertEquals(BRDataLoggerClient.GSON.toJson(row.snapshot()), json(row, false));
+        assertEquals(PRETTY_GSON.toJson(row.snapshot()), json(row, true));
+    }
+
+    @Test
+    public void emptyFootprintMatchesReferences() {
+        Row row = Row.random(new Random(9L));
+        row.loaded = 0;
+        row.bedrock = 0;
+        row.air = 0;
+        row.other = 0;
+        row.blastSafeCells = -1;
+        row.blastSafePercent = -1.0;
+        assertMatches(row);
+    }
+
+    private static void assertMatches(Row row) {
+        BRDataLoggerClient.RoomSnapshot snapshot = row.snapshot();
+        assertEquals(BRDataLoggerClient.GSON.toJson(snapshot), json(row, false));
+        assertEquals(PRETTY_GSON.toJson(snapshot), json(row, true));
+        assertEquals(row.oldCsv(), csv(row));
+        assertEquals(row.oldSummary(), summary(row));
+    }
+
+    private static String json(Row row, boolean pretty) {
+        StringBuilder out = new StringBuilder();
+        SnapshotText.appendJson(out, row.snapshot(), pretty);
+        return out.toString();
+    }
+
+    private static String csv(Row row) {
+        StringBuilder out = new StringBuilder();
+        SnapshotText.appendCsv(out, row.snapshot());
+        return out.toString();
+    }
+
+    private static String summary(Row row) {
+        StringBuilder out = new StringBuilder();
+        SnapshotText.appendSummary(out, row.snapshot());
+        return out.toString();
+    }
+
+    private static final class Row {
+        private Instant capturedAt;
+        private String profile;
+        private long roomId;
+        private double centerX;
+        private double centerY;
+        private double centerZ;
+        private int minX;
+        private int maxX;
+        private int minY;
+        private int maxY;
+        private int minZ;
+        private int maxZ;
+        private int roomCells;
+        private int exitCells;
+        private int exitPercent;
+        private int standableCount;
+        private int placeableCount;
+        private boolean sealed;
+        private int exitComponents;
+        private int maxExitComponentSize;
+        private int privateBestScore;
+        private int blastSafeCells;
+        private double blastSafePercent;
+        private int idealPrivateCount;
+        private boolean withYMax = true;
+        private int yMax;
+        private int pad;
+        private int width;
+        private int depth;
+        private int loaded;
+        private int skipped;
+        private int bedrock;
+        private int air;
+        private int other;
+
+        private static Row random(Random random) {
+            Row row = new Row();
+            row.capturedAt = Instant.ofEpochSecond(1_700_000_000L + random.nextInt(100_000_000), random.nextInt(1_000_000_000));
+            row.profile = PROFILES[random.nextInt(2)] + random.nextInt(40);
+            row.roomId = random.nextLong();
+            row.centerX = random.nextInt(2_000_000) / 7.0 - 100_000;
+            row.centerY = random.nextDouble() * 100 - 64;
+            row.centerZ = random.nextGaussian() * 1e5;
+            row.minX = random.nextInt(1000) - 500;
+            row.maxX = row.minX + random.nextInt(300);
+            row.minY = -60;
+            row.maxY = -60 + random.nextInt(8);
+            row.minZ = random.nextInt(1000) - 500;
+            row.maxZ = row.minZ + random.nextInt(300);
+            row.roomCells = 1 + random.nextInt(500_000);
+            row.exitCells = random.nextInt(row.roomCells + 1);
+            row.exitPercent = (int) Math.round(row.exitCells * 100.0 / row.roomCells);
+            row.standableCount = random.nextInt(50);
+            row.placeableCount = random.nextInt(50);
+            row.sealed = random.nextBoolean();
+            row.exitComponents = random.nextInt(5);
+            row.maxExitComponentSize = random.nextInt(100);
+            row.privateBestScore = random.nextInt(1000);
+            row.blastSafeCells = random.nextBoolean() ? -1 : random.nextInt(row.roomCells + 1);
+            row.blastSafePercent = row.blastSafeCells >= 0 ? row.blastSafeCells * 100.0 / row.roomCells : -1.0;
+            row.idealPrivateCount = random.nextInt(200);
+            row.yMax = 5;
+            row.pad = 2;
+            row.width = row.maxX - row.minX + 5;
+            row.depth = row.maxZ - row.minZ + 5;
+            row.loaded = random.nextInt(row.width * row.depth + 1);
+            row.skipped = row.width * row.depth - row.loaded;
+            row.bedrock = row.loaded == 0 ? 0 : random.nextInt(row.loaded + 1);
+            row.air = row.loaded - row.bedrock == 0 ? 0 : random.nextInt(row.loaded - row.bedrock + 1);
+            row.other = row.loaded - row.bedrock - row.air;
+            return row;
+        }
+
+        private BRDataLoggerClient.RoomSnapshot snapshot() {
+            return new BRDataLoggerClient.RoomSnapshot(capturedAt, profile, roomId, centerX, centerY, centerZ,
+                    new BRDataLoggerClient.Bounds(minX, maxX, minY, maxY, minZ, maxZ),
+                    roomCells, exitCells, exitPercent, standableCount, placeableCount, sealed, exitComponents,
+                    maxExitComponentSize, privateBestScore, blastSafeCells, blastSafePercent, idealPrivateCount,
+                    withYMax ? new BRDataLoggerClient.YMaxSnapshot(yMax, pad, width, depth, loaded, skipped, bedrock, air, other) : null);
+        }
+
+        private String timestamp() {
+            return DateTimeFormatter.ISO_INSTANT.format(capturedAt);
+        }
+
+        private double pct(int count) {
+            return loaded <= 0 ? -1.0 : count * 100.0 / loaded;
+        }
+
+        private String oldCsv() {
+            String[] parts = new String[] {
+                    csvEscape(timestamp()),
+                    csvEscape(profile),
+                    String.valueOf(roomId),
+                    formatDouble(centerX),
+                    formatDouble(centerY),
+                    formatDouble(centerZ),
+                    String.valueOf(minX),
+                    String.valueOf(maxX),
+                    String.valueOf(minY),
+                    String.valueOf(maxY),
+                    String.valueOf(minZ),
+                    String.valueOf(maxZ),
+                    String.valueOf(roomCells),
+                    String.valueOf(exitCells),
+                    String.valueOf(exitPercent),
+                    String.valueOf(standableCount),
+                    String.valueOf(placeableCount),
+                    String.valueOf(sealed),
+                    String.valueOf(exitComponents),
+                    String.valueOf(maxExitComponentSize),
+                    String.valueOf(privateBestScore),
+                    String.valueOf(blastSafeCells),
+                    formatDouble(blastSafePercent),
+                    String.valueOf(idealPrivateCount),
+                    String.valueOf(yMax),
+                    String.valueOf(pad),
+                    String.valueOf(width),
+                    String.valueOf(depth),
+                    String.valueOf(loaded),
+                    String.valueOf(skipped),
+                    String.valueOf(bedrock),
+                    String.valueOf(air),
+                    String.valueOf(other),
+                    formatDouble(pct(bedrock)),
+                    formatDouble(pct(air)),
+                    formatDouble(pct(other))
+            };
+            return String.join(",", parts);
+        }
+
+        private String oldSummary() {
+            String sealedStr = sealed ? "sealed" : "open";
+            String blastStr = blastSafeCells >= 0 ? String.valueOf(blastSafeCells) : "-";
+            String blastPct = blastSafePercent >= 0 ? formatDouble(blastSafePercent) + "%" : "-";
+            String yMaxLoaded = loaded > 0 ? String.valueOf(loaded) : "0";
+            String yMaxB = loaded > 0 ? formatDouble(pct(bedrock)) + "%" : "-";
+            String yMaxA = loaded > 0 ? formatDouble(pct(air)) + "%" : "-";
+            String yMaxO = loaded > 0 ? formatDouble(pct(other)) + "%" : "-";
+            return String.format(Locale.ROOT,
+                    "%s room=%d center=(%.2f,%.2f,%.2f) size=%d exits=%d(%d%%) %s priv=%d ideal=%d blastSafe=%s(%s) yMax=%d loaded=%s b=%s a=%s o=%s",
+                    timestamp(), roomId, centerX, centerY, centerZ, roomCells, exitCells, exitPercent,
+                    sealedStr, privateBestScore, idealPrivateCount, blastStr, blastPct, yMax, yMaxLoaded, yMaxB, yMaxA, yMaxO);
+        }
+
+        private static String csvEscape(String value) {
+            if (value == null) {
+                return "";
+            }
+            String escaped = value.replace("\"", "\"\"");
+            return "\"" + escaped + "\"";
+        }
+
+        private static String formatDouble(double value) {
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                return "";
+            }
+            return String.format(Locale.ROOT, "%.3f", value);
+        }
+    }
+}